@@ -42,11 +42,12 @@ public class HMS {
                 UserType role;
                 switch (choice) {
                     case 1:
-                        Database.loadAllData();
+                        Database.ensureDataLoaded();
                         role = login(scanner);
                         if (role == null) {
-                            clearLoadedData(); //Clear data
+                            if (!Database.RESIDENT_MODE) clearLoadedData(); //Clear data
                         } else {
+                            loadRequiredData(role);
                             MenuInterface control = null;
                             switch (role) {
                                 case PATIENT -> control = new PatientMenu(currentUser);
@@ -92,10 +93,10 @@ public class HMS {
         // Retrieve user from database by ID 
         User user = null;
         switch (role) {
-            case PATIENT -> user = Database.patientsMap.get(inputID);
-            case DOCTOR -> user = Database.doctorsMap.get(inputID);
-            case PHARMACIST -> user = Database.pharmsMap.get(inputID);
-            case ADMINISTRATOR -> user = Database.adminsMap.get(inputID);
+            case PATIENT -> user = Database.users().findById(UserType.PATIENT, inputID);
+            case DOCTOR -> user = Database.users().findById(UserType.DOCTOR, inputID);
+            case PHARMACIST -> user = Database.users().findById(UserType.PHARMACIST, inputID);
+            case ADMINISTRATOR -> user = Database.users().findById(UserType.ADMINISTRATOR, inputID);
         }
 
         //System.out.println("user created");
@@ -113,7 +114,7 @@ public class HMS {
             return role;
         } else {
             System.out.println("Invalid ID or password.");
-            clearLoadedData(); // Clear loaded data on failed login
+            if (!Database.RESIDENT_MODE) clearLoadedData(); // Clear loaded data on failed login
             return null;
         }
     }
@@ -125,7 +126,7 @@ public class HMS {
     public static void logout() {
         try {
             Database.saveAllData(); // Save all changes before logout
-            clearLoadedData();
+            if (!Database.RESIDENT_MODE) clearLoadedData(); // Resident mode keeps data for the next login
             currentUser = null;
             System.out.println("Logout successful!");
         } catch (Exception e) {
@@ -199,55 +200,35 @@ public class HMS {
 
     /**
      * Loads the required data based on the user type.
+     * Staff and patients are already loaded for login. Patients and doctors only get their
+     * own appointments; anything else they need is loaded on demand by their menus.
+     * Pharmacists and administrators work across all data, so everything is loaded.
      *
      * @param userType The UserType representing the user's role.
      */
     public static void loadRequiredData(UserType userType) {
 
         switch (userType) {
-            case DOCTOR:
-                Database.loadStaffData();
-                Database.loadPatientData();
-                Database.loadInventoryData();
-                Database.loadAppointmentData();
-                Database.loadRequestsFromCSV();
+            case PATIENT:
+                Database.loadAppointmentsForPatient(currentUser.getID());
                 break;
 
-            case ADMINISTRATOR:
-                Database.loadStaffData();
-                Database.loadPatientData();
-                Database.loadInventoryData();
-                Database.loadAppointmentData();
-                Database.loadRequestsFromCSV();
+            case DOCTOR:
+                Database.loadAppointmentsForDoctor(currentUser.getID());
                 break;
 
             case PHARMACIST:
-                Database.loadStaffData();
-                Database.loadPatientData();
-                Database.loadInventoryData();
-                Database.loadAppointmentData();
-                Database.loadRequestsFromCSV();
-                break;
-
-            case PATIENT:
-                Database.loadPatientData();
-                Database.loadInventoryData();
-                Database.loadAppointmentData();
-                Database.loadRequestsFromCSV();
+            case ADMINISTRATOR:
+                Database.ensureAllDataLoaded();
                 break;
         }
     }
 
     /**
      * Clears all loaded data from the local database.
+     * Not used in resident mode, where data stays loaded for the life of the process.
      */
     private static void clearLoadedData() {
-        Database.patientsMap.clear();
-        Database.doctorsMap.clear();
-        Database.adminsMap.clear();
-        Database.pharmsMap.clear();
-        Database.inventoryMap.clear();
-        Database.appointmentMap.clear();
-        Database.requestMap.clear();
+        Database.unloadAllData();
     }
 }
\ No newline at end of file
@@ -17,9 +17,11 @@ public class AdminAppointmentControl extends AppointmentControl{
     /**
      * Displays all appointments in the system with their complete details.
      * For completed appointments, also displays the appointment outcome.
+     * Includes the archived appointments of closed months.
      */
     public static void viewAllAppointments(){
-        for (Appointment appointment : Database.appointmentMap.values()) {
+        Database.loadAppointmentHistory();
+        for (Appointment appointment : Database.appointments().findAll()) {
             if (appointment.getPatient() == null){
                 continue;
             }
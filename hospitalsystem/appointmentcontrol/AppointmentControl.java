@@ -5,6 +5,8 @@ import hospitalsystem.enums.*;
 import hospitalsystem.model.*;
 import hospitalsystem.model.Appointment.AppointmentOutcome;
 import hospitalsystem.model.Appointment.AppointmentSlot;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -28,10 +30,7 @@ public class AppointmentControl {
      * @return a sorted list of appointments assigned to the specified doctor
      */
     public static List<Appointment> getAppointmentsByDoctorID(String doctorID) {
-        return Database.appointmentMap.values().stream()
-                .filter(appointment -> appointment.getDoctor().getID().equals(doctorID))
-                .sorted()
-                .toList();
+        return Database.appointments().query().withDoctor(doctorID).list();
     }
 
     /**
@@ -41,10 +40,7 @@ public class AppointmentControl {
      * @return a sorted list of appointments booked by the specified patient
      */
     public static List<Appointment> getAppointmentsByPatientID(String patientID) {
-        return Database.appointmentMap.values().stream()
-                .filter(appointment -> (appointment.getPatient() != null? appointment.getPatient().getID().equals(patientID):false))
-                .sorted()
-                .toList();
+        return Database.appointments().query().withPatient(patientID).list();
     }
 
     /**
@@ -54,7 +50,31 @@ public class AppointmentControl {
      * @return the appointment matching the specified ID, or null if not found
      */
     public static Appointment getAppointmentByAppointmentID(String appointmentID) {
-        return Database.appointmentMap.get(appointmentID);
+        return Database.appointments().findById(appointmentID);
+    }
+
+    /**
+     * Retrieves a doctor's appointments with a slot in a time range, read from the
+     * time-ordered schedule index.
+     *
+     * @param doctor the doctor whose appointments are to be retrieved
+     * @param from start of the range, inclusive
+     * @param to end of the range, exclusive
+     * @return a sorted list of the doctor's appointments in the range
+     */
+    public static List<Appointment> getAppointmentsBetween(Doctor doctor, LocalDateTime from, LocalDateTime to) {
+        return Database.appointments().query().withDoctor(doctor.getID()).between(from, to).list();
+    }
+
+    /**
+     * Retrieves a doctor's appointments in the current week, from Monday to Sunday.
+     *
+     * @param doctor the doctor whose appointments are to be retrieved
+     * @return a sorted list of the doctor's appointments this week
+     */
+    public static List<Appointment> getAppointmentsThisWeek(Doctor doctor) {
+        LocalDateTime monday = LocalDate.now().with(DayOfWeek.MONDAY).atStartOfDay();
+        return getAppointmentsBetween(doctor, monday, monday.plusWeeks(1));
     }
 
     /**
@@ -64,11 +84,50 @@ public class AppointmentControl {
      * @return a sorted list of available appointments
      */
     public static List<Appointment> getAvailableSlots(Doctor doctor) {
-        return Database.appointmentMap.values().stream()
-                .filter(apt -> apt.getDoctor().getID().equals(doctor.getID()))
-                .filter(Appointment::getIsAvailable)
-                .sorted((a1, a2) -> a1.getSlot().getDateTime().compareTo(a2.getSlot().getDateTime()))
-                .toList();
+        return Database.appointments().query().withDoctor(doctor.getID()).available(true).list();
+    }
+
+    /**
+     * Finds a doctor's earliest slot open for booking at or after the given time, using
+     * the per-day availability bitmaps.
+     *
+     * @param doctor the doctor whose slots are searched
+     * @param from the earliest acceptable slot time
+     * @return the earliest available appointment, or null if the doctor has none
+     */
+    public static Appointment getFirstAvailableSlot(Doctor doctor, LocalDateTime from) {
+        return Database.appointments().findFirstAvailableByDoctor(doctor.getID(), from, LocalDateTime.MAX);
+    }
+
+    /**
+     * Retrieves the doctors with at least one slot open for booking in a time range,
+     * such as a given afternoon, using the per-day availability bitmaps.
+     *
+     * @param from start of the range, inclusive
+     * @param to end of the range, exclusive
+     * @return the doctors with an available slot in the range
+     */
+    public static List<Doctor> getDoctorsAvailableBetween(LocalDateTime from, LocalDateTime to) {
+        List<Doctor> doctors = new ArrayList<>();
+        for (String doctorID : Database.appointments().findDoctorsAvailableBetween(from, to)) {
+            User doctor = Database.users().findById(UserType.DOCTOR, doctorID);
+            if (doctor != null) {
+                doctors.add((Doctor) doctor);
+            }
+        }
+        return doctors;
+    }
+
+    /**
+     * Retrieves the earliest slots open for booking with any doctor, merging every
+     * doctor's open slots in time order.
+     *
+     * @param from the earliest acceptable slot time
+     * @param limit the maximum number of slots to return
+     * @return the earliest available appointments, in time order
+     */
+    public static List<Appointment> getSoonestAvailableSlots(LocalDateTime from, int limit) {
+        return Database.appointments().searchAvailable(from).first(limit);
     }
 
     /**
@@ -78,11 +137,8 @@ public class AppointmentControl {
      * @return a sorted list of unavailable appointments
      */
     public static List<Appointment> getUnavailableSlots(Doctor doctor) {
-        return Database.appointmentMap.values().stream()
-                .filter(apt -> apt.getDoctor().getID().equals(doctor.getID()))
-                .filter(apt -> !apt.getIsAvailable() && apt.getStatus() == AppointmentStatus.UNAVAILABLE)
-                .sorted((a1, a2) -> a1.getSlot().getDateTime().compareTo(a2.getSlot().getDateTime()))
-                .toList();
+        return Database.appointments().query().withDoctor(doctor.getID())
+                .withStatus(AppointmentStatus.UNAVAILABLE).available(false).list();
     }
 
     /**
@@ -92,11 +148,8 @@ public class AppointmentControl {
      * @return a sorted list of pending appointments
      */
     public static List<Appointment> getPendingAppointments(Doctor doctor) {
-        return Database.appointmentMap.values().stream()
-                .filter(apt -> apt.getDoctor().getID().equals(doctor.getID()))
-                .filter(apt -> apt.getStatus() == AppointmentStatus.PENDING && !apt.getIsAvailable())
-                .sorted((a1, a2) -> a1.getSlot().getDateTime().compareTo(a2.getSlot().getDateTime()))
-                .toList();
+        return Database.appointments().query().withDoctor(doctor.getID())
+                .withStatus(AppointmentStatus.PENDING).available(false).list();
     }
 
     /**
@@ -106,23 +159,32 @@ public class AppointmentControl {
      * @return a sorted list of booked appointments
      */
     public static List<Appointment> getBookedAppointments(Doctor doctor) {
-        return Database.appointmentMap.values().stream()
-                .filter(apt -> apt.getDoctor().getID().equals(doctor.getID()))
-                .filter(apt -> apt.getStatus() == AppointmentStatus.BOOKED)
-                .sorted((a1, a2) -> a1.getSlot().getDateTime().compareTo(a2.getSlot().getDateTime()))
-                .toList();
+        return Database.appointments().query().withDoctor(doctor.getID())
+                .withStatus(AppointmentStatus.BOOKED).list();
     }
 
     /**
      * Retrieves completed appointments for a specific doctor.
+     * Loads the archived appointments of closed months first.
      *
      * @return a sorted list of completed appointments
      */
     public static List<Appointment> getCompletedAppointments() {
-        return Database.appointmentMap.values().stream()
-                .filter(apt -> apt.getStatus() == AppointmentStatus.COMPLETED)
-                .sorted((a1, a2) -> a1.getSlot().getDateTime().compareTo(a2.getSlot().getDateTime()))
-                .toList();
+        Database.loadAppointmentHistory();
+        return Database.appointments().query().withStatus(AppointmentStatus.COMPLETED).list();
+    }
+
+    /**
+     * Retrieves appointments whose prescription is in a given status, such as those still
+     * waiting to be dispensed. Loads the archived appointments of closed months first.
+     *
+     * @param status the prescription status
+     * @return a sorted list of appointments with a prescription in the given status
+     */
+    public static List<Appointment> getAppointmentsByPrescriptionStatus(PrescriptionStatus status) {
+        Database.loadAppointmentHistory();
+        return Database.appointments().query().withStatus(AppointmentStatus.COMPLETED)
+                .withPrescriptionStatus(status).list();
     }
 
     /**
@@ -153,6 +215,7 @@ public class AppointmentControl {
      * @return a formatted string containing all appointment outcomes
      */
     public static String getAppointmentOutcomesString(Patient patient, String gap){
+        Database.loadAppointmentHistoryForPatient(patient.getID());
         StringBuilder sb = new StringBuilder();
         sb.append(gap).append("Appointment Outcomes: ");
 
@@ -1,12 +1,12 @@
 package hospitalsystem.appointmentcontrol;
 
 import hospitalsystem.data.Database;
+import hospitalsystem.data.SequenceService;
 import hospitalsystem.enums.*;
 import hospitalsystem.model.*;
 import hospitalsystem.model.Appointment.AppointmentSlot;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Controls and manages doctor-specific appointment operations in the hospital system.
@@ -27,12 +27,8 @@ public class DoctorAppointmentControl extends AppointmentControl {
      */
     public static List<Appointment> getUpcomingAppointments(Doctor doctor) {
         LocalDateTime currentDateTime = LocalDateTime.now();
-        return Database.appointmentMap.values().stream()
-                .filter(apt -> apt.getDoctor().getID().equals(doctor.getID()))
-                .filter(apt -> apt.getStatus() == AppointmentStatus.BOOKED)
-                .filter(apt -> apt.getSlot().getDateTime().isAfter(currentDateTime))
-                .sorted(Comparator.comparing(apt -> apt.getSlot().getDateTime()))
-                .collect(Collectors.toList());
+        return Database.appointments().query().withDoctor(doctor.getID()).withStatus(AppointmentStatus.BOOKED)
+                .between(currentDateTime, LocalDateTime.MAX).list();
     }
 
     /**
@@ -67,22 +63,20 @@ public class DoctorAppointmentControl extends AppointmentControl {
             }
         }
 
-        int maxID = Database.appointmentMap.keySet().stream()
-                .filter(id -> id.startsWith("APT"))
-                .mapToInt(id -> Integer.parseInt(id.substring(3)))
-                .max()
-                .orElse(0);
+        // One reservation covers the IDs of all the new slots
+        int nextID = SequenceService.reserve(Sequence.APPOINTMENT, slots.size(), Database::getHighestAppointmentNumber);
 
+        List<Appointment> appointments = new ArrayList<>(slots.size());
         for (AppointmentSlot slot : slots) {
-            String appointmentID = String.format("APT%03d", ++maxID);
+            String appointmentID = String.format("APT%03d", nextID++);
             Appointment appointment = new Appointment(appointmentID, null, doctor, slot);
             appointment.setIsAvailable(true);
             appointment.setStatus(AppointmentStatus.PENDING);
-            Database.appointmentMap.put(appointmentID, appointment);
+            appointments.add(appointment);
         }
+        Database.appointments().saveAll(appointments);
 
         doctor.setAvailableSlots(slots);
-        Database.saveAppointmentsToCSV();
         System.out.println("Generated " + slots.size() + " slots for next week.");
     }
 
@@ -93,11 +87,13 @@ public class DoctorAppointmentControl extends AppointmentControl {
      * @param slots the list of appointment slots to display
      */
     public static void displayAvailableSlots(List<Appointment> slots) {
-        System.out.println("\nAvailable Slots (PENDING, CANCELLED):");
-        for (int i = 0; i < slots.size(); i++) {
-            Appointment apt = slots.get(i);
-            if (apt.getStatus() == AppointmentStatus.PENDING || apt.getStatus() == AppointmentStatus.CANCELLED) {
-                System.out.printf("%d. %s - Status: %s\n", i + 1, apt.getSlot().toString(), apt.getStatus());
+        try (ScheduleListing listing = new ScheduleListing("\nAvailable Slots (PENDING, CANCELLED):")) {
+            for (int i = 0; i < slots.size(); i++) {
+                Appointment apt = slots.get(i);
+                if (apt.getStatus() == AppointmentStatus.PENDING || apt.getStatus() == AppointmentStatus.CANCELLED) {
+                    appendSlotRow(listing.row(), i + 1, apt);
+                    listing.writeRow();
+                }
             }
         }
     }
@@ -109,11 +105,13 @@ public class DoctorAppointmentControl extends AppointmentControl {
      * @param slots the list of appointment slots to display
      */
     public static void displayUnavailableSlots(List<Appointment> slots) {
-        System.out.println("\nUnavailable Slots (UNAVAILABLE, BOOKED):");
-        for (int i = 0; i < slots.size(); i++) {
-            Appointment apt = slots.get(i);
-            if (apt.getStatus() == AppointmentStatus.UNAVAILABLE || apt.getStatus() == AppointmentStatus.BOOKED) {
-                System.out.printf("%d. %s - Status: %s\n", i + 1, apt.getSlot().toString(), apt.getStatus());
+        try (ScheduleListing listing = new ScheduleListing("\nUnavailable Slots (UNAVAILABLE, BOOKED):")) {
+            for (int i = 0; i < slots.size(); i++) {
+                Appointment apt = slots.get(i);
+                if (apt.getStatus() == AppointmentStatus.UNAVAILABLE || apt.getStatus() == AppointmentStatus.BOOKED) {
+                    appendSlotRow(listing.row(), i + 1, apt);
+                    listing.writeRow();
+                }
             }
         }
     }
@@ -124,17 +122,13 @@ public class DoctorAppointmentControl extends AppointmentControl {
      * @param appointments the list of appointments to display
      */
     public static void displayPendingAppointments(List<Appointment> appointments) {
-        System.out.println("\nPending Appointment Requests (PENDING):");
-        for (int i = 0; i < appointments.size(); i++) {
-            Appointment apt = appointments.get(i);
-            if (apt.getStatus() == AppointmentStatus.PENDING) {
-                System.out.printf("%d. Patient: %s - Date: %s - Time: %02d:%02d - Status: %s\n",
-                        i + 1,
-                        apt.getPatient().getName(),
-                        apt.getSlot().getDateTime().toLocalDate(),
-                        apt.getSlot().getDateTime().getHour(),
-                        apt.getSlot().getDateTime().getMinute(),
-                        apt.getStatus());
+        try (ScheduleListing listing = new ScheduleListing("\nPending Appointment Requests (PENDING):")) {
+            for (int i = 0; i < appointments.size(); i++) {
+                Appointment apt = appointments.get(i);
+                if (apt.getStatus() == AppointmentStatus.PENDING) {
+                    appendPatientRow(listing.row(), i + 1, apt);
+                    listing.writeRow();
+                }
             }
         }
     }
@@ -145,16 +139,11 @@ public class DoctorAppointmentControl extends AppointmentControl {
      * @param appointments the list of appointments to display
      */
     public static void displayBookedAppointments(List<Appointment> appointments) {
-        System.out.println("\nBooked Appointments (BOOKED):");
-        for (int i = 0; i < appointments.size(); i++) {
-            Appointment apt = appointments.get(i);
-            System.out.printf("%d. Patient: %s - Date: %s - Time: %02d:%02d - Status: %s\n",
-                    i + 1,
-                    apt.getPatient().getName(),
-                    apt.getSlot().getDateTime().toLocalDate(),
-                    apt.getSlot().getDateTime().getHour(),
-                    apt.getSlot().getDateTime().getMinute(),
-                    apt.getStatus());
+        try (ScheduleListing listing = new ScheduleListing("\nBooked Appointments (BOOKED):")) {
+            for (int i = 0; i < appointments.size(); i++) {
+                appendPatientRow(listing.row(), i + 1, appointments.get(i));
+                listing.writeRow();
+            }
         }
     }
 
@@ -164,18 +153,16 @@ public class DoctorAppointmentControl extends AppointmentControl {
      * @param doctor the doctor whose schedule is to be displayed
      */
     public static void displayPersonalSchedule(Doctor doctor) {
-        List<Appointment> allAppointments = new ArrayList<>(Database.appointmentMap.values());
-        List<Appointment> doctorAppointments = allAppointments.stream()
-                .filter(apt -> apt.getDoctor().getID().equals(doctor.getID()))
-                .sorted((a1, a2) -> a1.getSlot().getDateTime().compareTo(a2.getSlot().getDateTime()))
-                .toList();
-
-        System.out.println("\nPersonal Schedule:");
-        for (Appointment apt : doctorAppointments) {
-            System.out.printf("- %s (%s) - %s\n",
-                    apt.getSlot().toString(),
-                    apt.getStatus(),
-                    apt.getIsAvailable() ? "Available" : "Unavailable");
+        List<Appointment> doctorAppointments = getAppointmentsByDoctorID(doctor.getID());
+
+        try (ScheduleListing listing = new ScheduleListing("\nPersonal Schedule:")) {
+            for (Appointment apt : doctorAppointments) {
+                StringBuilder row = listing.row().append("- ");
+                AppointmentSlot.appendTo(row, apt.getSlotMinute())
+                        .append(" (").append(apt.getStatus().name()).append(") - ")
+                        .append(apt.getIsAvailable() ? "Available" : "Unavailable");
+                listing.writeRow();
+            }
         }
     }
 
@@ -190,20 +177,34 @@ public class DoctorAppointmentControl extends AppointmentControl {
         if (upcomingAppointments.isEmpty()) {
             System.out.println("\nNo upcoming appointments found.");
         } else {
-            System.out.println("\nUpcoming Appointments:");
-            for (int i = 0; i < upcomingAppointments.size(); i++) {
-                Appointment apt = upcomingAppointments.get(i);
-                System.out.printf("%d. Patient: %s - Date: %s - Time: %02d:%02d - Status: %s\n",
-                        i + 1,
-                        apt.getPatient().getName(),
-                        apt.getSlot().getDateTime().toLocalDate(),
-                        apt.getSlot().getDateTime().getHour(),
-                        apt.getSlot().getDateTime().getMinute(),
-                        apt.getStatus());
+            try (ScheduleListing listing = new ScheduleListing("\nUpcoming Appointments:")) {
+                for (int i = 0; i < upcomingAppointments.size(); i++) {
+                    appendPatientRow(listing.row(), i + 1, upcomingAppointments.get(i));
+                    listing.writeRow();
+                }
             }
         }
     }
 
+    /**
+     * Appends a numbered slot row, such as "1. 2024-11-10 09:00 - Status: PENDING".
+     */
+    private static void appendSlotRow(StringBuilder row, int number, Appointment apt) {
+        row.append(number).append(". ");
+        AppointmentSlot.appendTo(row, apt.getSlotMinute())
+                .append(" - Status: ").append(apt.getStatus().name());
+    }
+
+    /**
+     * Appends a numbered appointment row with the patient, such as
+     * "1. Patient: Alice Brown - Date: 2024-11-10 - Time: 09:00 - Status: BOOKED".
+     */
+    private static void appendPatientRow(StringBuilder row, int number, Appointment apt) {
+        row.append(number).append(". Patient: ").append(apt.getPatient().getName()).append(" - Date: ");
+        AppointmentSlot.appendDate(row, apt.getSlotMinute()).append(" - Time: ");
+        AppointmentSlot.appendTime(row, apt.getSlotMinute()).append(" - Status: ").append(apt.getStatus().name());
+    }
+
     /**
      * Marks a specific appointment slot as unavailable.
      * Updates the appointment status in the database.
@@ -212,10 +213,12 @@ public class DoctorAppointmentControl extends AppointmentControl {
      * @param appointment the appointment to be marked as unavailable
      */
     public static void markSlotUnavailable(Doctor doctor, Appointment appointment) {
-        appointment.setIsAvailable(false);
+        if (!appointment.claim(null)) {
+            System.out.println("This slot has just been booked and can no longer be marked as unavailable.");
+            return;
+        }
         appointment.setStatus(AppointmentStatus.UNAVAILABLE);
-        Database.appointmentMap.put(appointment.getAppointmentID(), appointment);
-        Database.saveAppointmentsToCSV();
+        Database.appointments().save(appointment);
         System.out.println("Slot marked as unavailable successfully.");
     }
 
@@ -229,8 +232,7 @@ public class DoctorAppointmentControl extends AppointmentControl {
     public static void markSlotAvailable(Doctor doctor, Appointment appointment) {
         appointment.setIsAvailable(true);
         appointment.setStatus(AppointmentStatus.PENDING);
-        Database.appointmentMap.put(appointment.getAppointmentID(), appointment);
-        Database.saveAppointmentsToCSV();
+        Database.appointments().save(appointment);
         System.out.println("Slot marked as available successfully.");
     }
 
@@ -243,8 +245,7 @@ public class DoctorAppointmentControl extends AppointmentControl {
      */
     public static void acceptAppointment(Doctor doctor, Appointment appointment) {
         appointment.setStatus(AppointmentStatus.BOOKED);
-        Database.appointmentMap.put(appointment.getAppointmentID(), appointment);
-        Database.saveAppointmentsToCSV();
+        Database.appointments().save(appointment);
         System.out.println("Appointment accepted successfully.");
     }
 
@@ -258,8 +259,7 @@ public class DoctorAppointmentControl extends AppointmentControl {
     public static void declineAppointment(Doctor doctor, Appointment appointment) {
         appointment.setStatus(AppointmentStatus.CANCELLED);
         appointment.setIsAvailable(true);
-        Database.appointmentMap.put(appointment.getAppointmentID(), appointment);
-        Database.saveAppointmentsToCSV();
+        Database.appointments().save(appointment);
         System.out.println("Appointment declined successfully.");
     }
 
@@ -282,8 +282,7 @@ public class DoctorAppointmentControl extends AppointmentControl {
         appointment.setStatus(AppointmentStatus.COMPLETED);
 
         // Update database
-        Database.appointmentMap.put(appointment.getAppointmentID(), appointment);
-        Database.saveAppointmentsToCSV();
+        Database.appointments().save(appointment);
 
         // Update patient's medical record if needed
         Patient patient = appointment.getPatient();
@@ -468,9 +467,10 @@ public class DoctorAppointmentControl extends AppointmentControl {
             ArrayList<Medicine.MedicineSet> prescribedMedicineList = new ArrayList<>();
 
             // Display available medicines first
+            Database.ensureInventoryLoaded();
             System.out.println("\nAvailable Medicines:");
-            for (String medName : Database.inventoryMap.keySet()) {
-                System.out.println("- " + medName);
+            for (Medicine medicine : Database.inventory().findAll()) {
+                System.out.println("- " + medicine.getMedicineName());
             }
 
             while (true) {
@@ -480,7 +480,7 @@ public class DoctorAppointmentControl extends AppointmentControl {
                 System.out.print("Enter medication name: ");
                 String medicineName = scanner.nextLine().trim();
 
-                Medicine medicine = Database.inventoryMap.get(medicineName);
+                Medicine medicine = Database.inventory().findByName(medicineName);
                 if (medicine == null) {
                     System.out.println("Medicine not found in inventory. Please select from the available medicines list.");
                     continue;
@@ -3,6 +3,7 @@ package hospitalsystem.appointmentcontrol;
 import hospitalsystem.data.*;
 import hospitalsystem.enums.*;
 import hospitalsystem.model.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,6 +16,10 @@ import java.util.List;
  * @since 2024-11-19
  */
 public class PatientAppointmentControl extends AppointmentControl{
+
+    /** Number of slots listed when a patient asks for the soonest slot with any doctor */
+    private static final int SOONEST_SLOTS_SHOWN = 10;
+
     // move majority of patient appointment related stuff here
     /**
      * Retrieves all scheduled (non-completed) appointments for a specific patient.
@@ -24,16 +29,60 @@ public class PatientAppointmentControl extends AppointmentControl{
      * @return a list of active appointments sorted by date and time
      */
     public static List<Appointment> getScheduledSlots(Patient patient) {
-        String patientID = patient.getID();
-        return Database.appointmentMap.values().stream()
-                .filter(appointment -> (appointment.getPatient() != null? appointment.getPatient().getID().equals(patientID):false))
-                .filter(apt -> !apt.getIsAvailable() && apt.getStatus() != AppointmentStatus.COMPLETED)
-                .sorted((a1, a2) -> a1.getSlot().getDateTime().compareTo(a2.getSlot().getDateTime()))
-                .toList();
+        return Database.appointments().query().withPatient(patient.getID())
+                .withStatusNot(AppointmentStatus.COMPLETED).available(false).list();
+    }
+
+    /**
+     * Books an available slot for a patient. Claiming the slot is atomic, so of several
+     * patients booking the same slot at once exactly one gets it; for the others nothing
+     * is changed and false is returned.
+     *
+     * @param patient the patient booking the appointment
+     * @param slot the available slot to book
+     * @return true if the slot was booked, false if it had already been taken
+     */
+    public static boolean bookAppointment(Patient patient, Appointment slot) {
+        if (!slot.claim(patient)) {
+            return false;
+        }
+        Database.appointments().save(slot);
+        return true;
+    }
+
+    /**
+     * Moves a patient's appointment to another available slot as one operation. The new
+     * slot is claimed before the old one is released, so the patient always holds a slot
+     * and no one can take the old slot before the new one is secured. Both changes are
+     * then persisted together in a single write, the old slot reopened as pending like a
+     * cancelled one. If the current appointment is not the patient's, or is no longer pending
+     * or booked, or the new slot has already been taken, nothing is changed.
+     *
+     * @param patient the patient whose appointment is moved
+     * @param currentAppointment the patient's current appointment
+     * @param newSlot the available slot to move the appointment to
+     * @return true if the appointment was moved, false if it cannot be moved or the new slot
+     *         had already been taken
+     */
+    public static boolean rescheduleAppointment(Patient patient, Appointment currentAppointment, Appointment newSlot) {
+        Patient owner = currentAppointment.getPatient();
+        AppointmentStatus status = currentAppointment.getStatus();
+        if (owner == null || !owner.getID().equals(patient.getID()) || currentAppointment.getIsAvailable()
+                || (status != AppointmentStatus.PENDING && status != AppointmentStatus.BOOKED)) {
+            return false;
+        }
+        if (!newSlot.claim(patient)) {
+            return false;
+        }
+        currentAppointment.setPatient(null);
+        currentAppointment.setStatus(AppointmentStatus.PENDING);
+        currentAppointment.setIsAvailable(true);
+        Database.appointments().saveAll(List.of(newSlot, currentAppointment));
+        return true;
     }
 
     public static List<Appointment> handleViewAppointmentSlots(){
-        List<User> doctorList = new ArrayList<>(Database.doctorsMap.values());
+        List<User> doctorList = new ArrayList<>(Database.users().findAll(UserType.DOCTOR));
         //hides main choice field to prevent overriding main loop
         int choice;
         System.out.println("Which doctor you want to select?");
@@ -41,6 +90,7 @@ public class PatientAppointmentControl extends AppointmentControl{
         for (i = 0; i < doctorList.size(); i++) {
             System.out.println((i + 1) + ". " + doctorList.get(i).getName());
         }
+        System.out.println((i + 1) + ". Any doctor (soonest available)");
         System.out.print("Enter choice: ");
         while (true) { 
             try {
@@ -49,11 +99,24 @@ public class PatientAppointmentControl extends AppointmentControl{
                 System.out.println("Invalid input, only numbers are accepted.");
                 continue;
             }
-            if (choice > doctorList.size() || choice <= 0){
+            if (choice > doctorList.size() + 1 || choice <= 0){
                 System.out.println("Invalid choice.");
                 continue;
             }
+            if (choice == doctorList.size() + 1) {
+                Database.ensureAppointmentsLoaded();
+                List<Appointment> soonestSlots = getSoonestAvailableSlots(LocalDateTime.now(), SOONEST_SLOTS_SHOWN);
+                if (soonestSlots.isEmpty()) {
+                    System.out.println("No doctor has an available slot.");
+                }
+                for (i = 0; i < soonestSlots.size(); i++){
+                    System.out.println((i + 1) + ". " + soonestSlots.get(i).getSlot()
+                            + " with " + soonestSlots.get(i).getDoctor().getName());
+                }
+                return soonestSlots;
+            }
             Doctor selectedDoctor = (Doctor) doctorList.get(choice-1);
+            Database.loadAppointmentsForDoctor(selectedDoctor.getID());
             List<Appointment> availableSlots = getAvailableSlots(selectedDoctor);
             for (i = 0; i < availableSlots.size(); i++){
                 System.out.println((i + 1) + ". " + availableSlots.get(i).getSlot());
@@ -66,7 +129,11 @@ public class PatientAppointmentControl extends AppointmentControl{
         //hides main choice field to prevent overriding main loop
         int choice;
         List<Appointment> availableSlots = handleViewAppointmentSlots();
-        System.out.print("Which slot would you like to schedule your new appointment for: ");
+        if (availableSlots.isEmpty()) {
+            System.out.println("No available slots to schedule.");
+            return;
+        }
+        System.out.print("Which slot would you like to schedule your new appointment for (0 to cancel): ");
         while (true) { 
             try {
                 choice = Integer.parseInt(scanner.nextLine());
@@ -74,16 +141,23 @@ public class PatientAppointmentControl extends AppointmentControl{
                 System.out.println("Invalid input, only numbers are accepted.");
                 continue;
             }
-            if (choice > availableSlots.size() || choice <= 0){
+            if (choice == 0) {
+                return;
+            }
+            if (choice > availableSlots.size() || choice < 0){
                 System.out.println("Invalid choice.");
                 continue;
             }
             Appointment chosenSlot = availableSlots.get(choice-1);
-            chosenSlot.setPatient(patient);
-            chosenSlot.setIsAvailable(false);
-            Database.appointmentMap.put(chosenSlot.getAppointmentID(), chosenSlot);
+            if (!bookAppointment(patient, chosenSlot)) {
+                availableSlots = handleViewRemainingSlots(availableSlots);
+                if (availableSlots.isEmpty()) {
+                    return;
+                }
+                System.out.print("Which slot would you like to schedule your new appointment for (0 to cancel): ");
+                continue;
+            }
             System.out.println("Successfully scheduled appointment. Pending Doctor's approval.");
-            Database.saveAppointmentData();
             break;
         }
     }
@@ -115,16 +189,93 @@ public class PatientAppointmentControl extends AppointmentControl{
             Appointment chosenSlot = scheduledAppointments.get(choice-1);
             chosenSlot.setPatient(null);
             chosenSlot.setIsAvailable(true);
-            Database.appointmentMap.put(chosenSlot.getAppointmentID(), chosenSlot);
             System.err.println("Successfully canceled appointment.");
-            Database.saveAppointmentData();
+            Database.appointments().save(chosenSlot);
             break;
         }
     }
 
     public static void handleRescheduleAppointment(Patient patient){
-        handleCancelAppointment(patient);
-        handleScheduleAppointment(patient);
+        List<Appointment> scheduledAppointments = handleViewScheduledAppointments(patient);
+        if (scheduledAppointments.isEmpty()) {
+            System.out.println("You have no scheduled appointments to reschedule.");
+            return;
+        }
+        System.out.print("Which appointment would you like to reschedule: ");
+        Appointment currentAppointment = scheduledAppointments.get(readChoice(1, scheduledAppointments.size()) - 1);
+        List<Appointment> availableSlots = handleViewAppointmentSlots();
+        if (availableSlots.isEmpty()) {
+            System.out.println("Your appointment has not been changed.");
+            return;
+        }
+        System.out.print("Which slot would you like to move your appointment to (0 to cancel): ");
+        while (true) {
+            int choice = readChoice(0, availableSlots.size());
+            if (choice == 0) {
+                System.out.println("Your appointment has not been changed.");
+                return;
+            }
+            Appointment newSlot = availableSlots.get(choice - 1);
+            if (!rescheduleAppointment(patient, currentAppointment, newSlot)) {
+                if (newSlot.getIsAvailable()) {
+                    // Changed meanwhile, such as declined by the doctor
+                    System.out.println("This appointment can no longer be rescheduled.");
+                    return;
+                }
+                availableSlots = handleViewRemainingSlots(availableSlots);
+                if (availableSlots.isEmpty()) {
+                    System.out.println("Your appointment has not been changed.");
+                    return;
+                }
+                System.out.print("Which slot would you like to move your appointment to (0 to cancel): ");
+                continue;
+            }
+            System.out.println("Successfully rescheduled appointment. Pending Doctor's approval.");
+            break;
+        }
+    }
+
+    /**
+     * Lists the slots that are still available after the slot a patient chose was taken by
+     * someone else, so the patient does not choose from slots that are gone.
+     *
+     * @param slots the slots the patient was choosing from
+     * @return the slots among them that are still available, as listed
+     */
+    private static List<Appointment> handleViewRemainingSlots(List<Appointment> slots) {
+        List<Appointment> remainingSlots = new ArrayList<>();
+        for (Appointment slot : slots) {
+            if (slot.getIsAvailable()) {
+                remainingSlots.add(slot);
+            }
+        }
+        if (remainingSlots.isEmpty()) {
+            System.out.println("Sorry, this slot has just been taken and no other slot is available.");
+            return remainingSlots;
+        }
+        System.out.println("Sorry, this slot has just been taken. Slots still available:");
+        for (int i = 0; i < remainingSlots.size(); i++) {
+            System.out.println((i + 1) + ". " + remainingSlots.get(i).getSlot()
+                    + " with " + remainingSlots.get(i).getDoctor().getName());
+        }
+        return remainingSlots;
+    }
+
+    private static int readChoice(int min, int max) {
+        int choice;
+        while (true) {
+            try {
+                choice = Integer.parseInt(scanner.nextLine());
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input, only numbers are accepted.");
+                continue;
+            }
+            if (choice > max || choice < min){
+                System.out.println("Invalid choice.");
+                continue;
+            }
+            return choice;
+        }
     }
 
 }
@@ -37,26 +37,50 @@ public class PharmacistAppointmentControl extends AppointmentControl{
             System.out.println("Enter appointment ID to dispense prescription for: ");
             String appointmentID = scanner.nextLine();
 
-            if (!Database.appointmentMap.containsKey(appointmentID)){
+            Appointment appointment = Database.appointments().findById(appointmentID);
+            if (appointment == null){
                 System.out.println("Appointment does not exist.");
                 continue;
             }
 
-            // Update prescription status to dispensed 
-            Appointment appointment = Database.appointmentMap.get(appointmentID);
-            Prescription prescription = appointment.getPrescription(); 
-            
-            appointment.getAppointmentOutcome().getPrescription().setStatus(PrescriptionStatus.DISPENSED);
-            System.out.println("Prescription has been dispensed.");
-            System.out.println(prescription);
+            // Dispense the prescription, taking every prescribed medicine from stock or none
+            if (DispensingService.dispense(appointment)) {
+                System.out.println("Prescription has been dispensed.");
+                System.out.println(appointment.getPrescription());
+            }
             
             // Option to repeat 
             if (!HMS.repeat(scanner)) return;
         }
     }
 
-    public static boolean updatePrescriptionStatus(Prescription prescription, PrescriptionStatus newStatus) {
-        prescription.setStatus(newStatus);
+    /**
+     * Updates the status of an appointment's prescription and saves the appointment.
+     * Marking it as dispensed takes the prescribed medicines from stock, and fails without
+     * changing anything if any of them is short. A dispensed prescription cannot be
+     * changed, as its stock has been taken.
+     *
+     * @param appointment the appointment
+     * @param newStatus the new status
+     * @return true if the status was updated
+     */
+    public static boolean updatePrescriptionStatus(Appointment appointment, PrescriptionStatus newStatus) {
+        if (newStatus == PrescriptionStatus.DISPENSED) {
+            return DispensingService.dispense(appointment);
+        }
+        Prescription prescription = appointment.getPrescription();
+        if (prescription == null) {
+            System.out.println("No prescription found for this appointment.");
+            return false;
+        }
+        synchronized (prescription) {
+            if (prescription.getStatus() == PrescriptionStatus.DISPENSED) {
+                System.out.println("Prescription has already been dispensed and cannot be changed.");
+                return false;
+            }
+            prescription.setStatus(newStatus);
+        }
+        Database.appointments().save(appointment);
         return true;
     }
 } 
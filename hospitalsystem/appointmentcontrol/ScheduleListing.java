@@ -0,0 +1,61 @@
+package hospitalsystem.appointmentcontrol;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Writes one schedule listing to the console. Each row is built in a single reused buffer
+ * and copied into one buffered writer for the whole listing, which is flushed when the
+ * listing is closed, instead of formatting every row with printf and writing it on its own.
+ *
+ * Closing a listing flushes it but leaves System.out open.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+class ScheduleListing implements AutoCloseable {
+
+    private final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+    private final StringBuilder row = new StringBuilder(128);
+    private char[] chars = new char[128];
+
+    /**
+     * Starts a listing with a heading line.
+     *
+     * @param heading the heading, written on its own line
+     */
+    ScheduleListing(String heading) {
+        out.println(heading);
+    }
+
+    /**
+     * @return the row buffer, emptied for the next row
+     */
+    StringBuilder row() {
+        row.setLength(0);
+        return row;
+    }
+
+    /**
+     * Writes the row buffer as one line.
+     */
+    void writeRow() {
+        int length = row.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        row.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+        out.write('\n');
+    }
+
+    /**
+     * Flushes the listing to System.out.
+     */
+    @Override
+    public void close() {
+        out.flush();
+    }
+}
@@ -0,0 +1,187 @@
+package hospitalsystem.data;
+
+import hospitalsystem.model.Appointment;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Archive of appointments from closed months, kept out of Appointment.csv so that the
+ * hot working set only holds the current and future months.
+ *
+ * Each sealed month is a gzip-compressed segment, appointments/YYYY-MM.csv.gz, in the
+ * same layout as Appointment.csv. A segment is written once, when its month is sealed,
+ * and never changed afterwards: an archived appointment that is changed later is written
+ * to Appointment.csv again, and that copy takes precedence over the one in the segment.
+ * The manifest lists the sealed months with their appointment count and highest
+ * appointment number, so neither requires a segment to be read.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class AppointmentArchive {
+
+    /** Directory holding the sealed month segments and the manifest */
+    static final String ARCHIVE_DIRECTORY = "hospitalsystem/data/appointments";
+
+    private static final String MANIFEST_PATH = ARCHIVE_DIRECTORY + "/manifest.csv";
+    private static final String MANIFEST_HEADER = "Month,Appointments,HighestAppointmentNumber";
+
+    /** Sealed months with their appointment count and highest appointment number, read on first use */
+    private static TreeMap<YearMonth, int[]> manifest;
+
+    /**
+     * Checks whether a month is over, so that its appointments may be sealed.
+     *
+     * @param month the month
+     * @return true if the month ended before the current one started
+     */
+    static boolean isClosed(YearMonth month) {
+        return month.isBefore(YearMonth.now());
+    }
+
+    /**
+     * @param appointment the appointment
+     * @return the month of the appointment's slot
+     */
+    static YearMonth monthOf(Appointment appointment) {
+        return YearMonth.from(appointment.getSlot().getDateTime());
+    }
+
+    /**
+     * @param month the month
+     * @return true if the month has been sealed into a segment
+     */
+    static synchronized boolean isSealed(YearMonth month) {
+        return readManifest().containsKey(month);
+    }
+
+    /**
+     * @return the sealed months, oldest first
+     */
+    static synchronized List<YearMonth> getSealedMonths() {
+        return new ArrayList<>(readManifest().keySet());
+    }
+
+    /**
+     * @return the highest number of an APT appointment ID in any segment, or 0 if there are none
+     */
+    static synchronized int getHighestAppointmentNumber() {
+        int highest = 0;
+        for (int[] entry : readManifest().values()) {
+            highest = Math.max(highest, entry[1]);
+        }
+        return highest;
+    }
+
+    /**
+     * Forgets the cached manifest, so that months sealed by another process are seen.
+     */
+    static synchronized void refresh() {
+        manifest = null;
+    }
+
+    /**
+     * Reads the appointments of a sealed month.
+     *
+     * @param month the sealed month
+     * @return the month's appointments keyed by appointment ID, in file order
+     * @throws IOException if the segment cannot be read
+     */
+    static Map<String, Appointment> read(YearMonth month) throws IOException {
+        byte[] bytes;
+        try (InputStream in = new GZIPInputStream(new FileInputStream(segmentPath(month)), 1 << 16)) {
+            bytes = in.readAllBytes();
+        }
+        AppointmentCSVParser parser = new AppointmentCSVParser(ByteBuffer.wrap(bytes));
+        parser.skipLine(); // Skip header
+        Map<String, Appointment> appointments = new LinkedHashMap<>();
+        while (parser.hasNext()) {
+            Appointment appointment = parser.next();
+            if (appointment != null) {
+                appointments.put(appointment.getAppointmentID(), appointment);
+            }
+        }
+        return appointments;
+    }
+
+    /**
+     * Seals closed months: writes one segment per month, then records them in the manifest.
+     * Each file is replaced atomically and the manifest is written last, so a month only
+     * counts as sealed once its segment is complete on disk.
+     *
+     * @param months the appointments of each month to seal, sorted by appointment ID
+     * @throws IOException if a segment or the manifest cannot be written
+     */
+    static synchronized void seal(Map<YearMonth, List<Appointment>> months) throws IOException {
+        if (months.isEmpty()) {
+            return;
+        }
+        new File(ARCHIVE_DIRECTORY).mkdirs();
+        TreeMap<YearMonth, int[]> sealed = new TreeMap<>(readManifest());
+        for (Map.Entry<YearMonth, List<Appointment>> month : months.entrySet()) {
+            int highest = 0;
+            try (AtomicFileWriter bw = AtomicFileWriter.openCompressed(segmentPath(month.getKey()))) {
+                bw.write(Database.APPOINTMENT_CSV_HEADER);
+                bw.newLine();
+                for (Appointment appointment : month.getValue()) {
+                    bw.write(Database.formatAppointmentToCSV(appointment));
+                    bw.newLine();
+                    highest = Math.max(highest, AppointmentOffsetIndex.appointmentNumber(appointment.getAppointmentID()));
+                }
+                bw.commit();
+            }
+            sealed.put(month.getKey(), new int[] {month.getValue().size(), highest});
+            System.out.println("Sealed " + month.getValue().size() + " appointments of " + month.getKey()
+                    + " into " + segmentPath(month.getKey()));
+        }
+
+        try (AtomicFileWriter bw = AtomicFileWriter.open(MANIFEST_PATH)) {
+            bw.write(MANIFEST_HEADER);
+            bw.newLine();
+            for (Map.Entry<YearMonth, int[]> entry : sealed.entrySet()) {
+                bw.write(entry.getKey() + "," + entry.getValue()[0] + "," + entry.getValue()[1]);
+                bw.newLine();
+            }
+            bw.commit();
+        }
+        manifest = sealed;
+    }
+
+    private static String segmentPath(YearMonth month) {
+        return ARCHIVE_DIRECTORY + "/" + month + ".csv.gz";
+    }
+
+    private static TreeMap<YearMonth, int[]> readManifest() {
+        if (manifest != null) {
+            return manifest;
+        }
+        TreeMap<YearMonth, int[]> sealed = new TreeMap<>();
+        File file = new File(MANIFEST_PATH);
+        if (file.exists()) {
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                br.readLine(); // Skip header
+                String line;
+                while ((line = br.readLine()) != null) {
+                    String[] fields = line.split(",");
+                    if (fields.length == 3) {
+                        sealed.put(YearMonth.parse(fields[0]),
+                                new int[] {Integer.parseInt(fields[1]), Integer.parseInt(fields[2])});
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Error reading appointment archive manifest: " + e.getMessage());
+            }
+        }
+        manifest = sealed;
+        return manifest;
+    }
+}
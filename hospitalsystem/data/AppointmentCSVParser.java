@@ -0,0 +1,424 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.AppointmentStatus;
+import hospitalsystem.enums.PrescriptionStatus;
+import hospitalsystem.model.*;
+import hospitalsystem.model.Appointment.AppointmentSlot;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Single-pass, byte-level parser for appointment CSV records.
+ * Works directly on a (typically memory-mapped) byte buffer: field boundaries are found
+ * in one scan, numbers, statuses and flags are decoded straight from the bytes, and
+ * strings are only materialised for IDs, notes and medicine names.
+ * Used for both Appointment.csv and the appointment log, which share the same layout.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class AppointmentCSVParser {
+
+    private static final int MAX_FIELDS = 13;
+    private static final byte[][] STATUS_NAMES = new byte[AppointmentStatus.values().length][];
+
+    static {
+        for (AppointmentStatus status : AppointmentStatus.values()) {
+            STATUS_NAMES[status.ordinal()] = status.name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+
+    // Boundaries of the fields in the current record
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+    private final boolean[] fieldQuoted = new boolean[MAX_FIELDS];
+    private int fieldCount;
+    private int recordStart;
+
+    private byte[] scratch = new byte[64];
+
+    // Lookups are memoised because consecutive records usually share a doctor
+    private final byte[] lastDoctorKey = new byte[64];
+    private int lastDoctorKeyLength = -1;
+    private Doctor lastDoctor;
+
+    /**
+     * Creates a parser over the given buffer, starting at its current position.
+     *
+     * @param buffer the buffer holding CSV records
+     */
+    public AppointmentCSVParser(ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.limit());
+    }
+
+    /**
+     * Creates a parser over a region of the given buffer.
+     *
+     * @param buffer the buffer holding CSV records
+     * @param start offset of the first record to parse
+     * @param end offset just past the last byte to parse
+     */
+    public AppointmentCSVParser(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.position = start;
+        this.limit = end;
+    }
+
+    /**
+     * Maps the whole file read-only into memory.
+     *
+     * @param filePath path of the file to map
+     * @return the mapped buffer, empty if the file does not exist
+     * @throws IOException if the file cannot be mapped
+     */
+    public static ByteBuffer map(String filePath) throws IOException {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            return ByteBuffer.allocate(0);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map: " + filePath);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Splits a region of CSV records into roughly equal chunks that each start at a record
+     * boundary, so they can be parsed independently. Newlines inside quoted fields are not
+     * treated as boundaries.
+     *
+     * @param buffer the buffer holding CSV records
+     * @param start offset of the first record
+     * @param end offset just past the last byte
+     * @param chunks the desired number of chunks
+     * @return chunk boundaries, starting with start and ending with end
+     */
+    public static int[] splitRecords(ByteBuffer buffer, int start, int end, int chunks) {
+        int[] bounds = new int[chunks + 1];
+        int count = 0;
+        bounds[count++] = start;
+        long chunkSize = Math.max(1, (end - start) / chunks);
+        long nextTarget = start + chunkSize;
+        boolean inQuotes = false;
+
+        for (int p = start; p < end && count < chunks; p++) {
+            byte b = buffer.get(p);
+            if (b == '"') {
+                inQuotes = !inQuotes;
+            } else if (b == '\n' && !inQuotes && p >= nextTarget) {
+                bounds[count++] = p + 1;
+                nextTarget = p + 1 + chunkSize;
+            }
+        }
+        bounds[count++] = end;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Skips the remainder of the current line, used for the header row.
+     */
+    public void skipLine() {
+        while (position < limit && buffer.get(position++) != '\n') {
+            // advance
+        }
+    }
+
+    /**
+     * @return true if there are bytes left to parse
+     */
+    public boolean hasNext() {
+        return position < limit;
+    }
+
+    /**
+     * @return the offset of the next record to be parsed
+     */
+    public int position() {
+        return position;
+    }
+
+    /**
+     * @return the offset at which the most recently parsed record started
+     */
+    public int recordStart() {
+        return recordStart;
+    }
+
+    /**
+     * Moves the parser to the record starting at the given offset.
+     *
+     * @param offset offset of a record, as stored in the appointment offset index
+     */
+    public void seek(int offset) {
+        position = offset;
+    }
+
+    /**
+     * Finds the fields of the next record without building an Appointment,
+     * so their values can be read with {@link #field(int)}.
+     *
+     * @return true if the record has enough fields to be an appointment
+     */
+    public boolean nextRecord() {
+        scanRecord();
+        return fieldCount >= 10;
+    }
+
+    /**
+     * Decodes a field of the record found by the last call to {@link #nextRecord()}.
+     *
+     * @param index the field index, 0 for the appointment ID
+     * @return the field value
+     */
+    public String field(int index) {
+        return index < Math.min(fieldCount, MAX_FIELDS) ? decode(index) : "";
+    }
+
+    /**
+     * Parses the next record into an Appointment, resolving the doctor, patient and
+     * prescribed medicines from the Database maps. The appointment is not linked.
+     *
+     * @return the parsed appointment, or null if the record is blank or invalid
+     */
+    public Appointment next() {
+        scanRecord();
+        if (fieldCount == 1 && fieldStart[0] == fieldEnd[0]) {
+            return null; // Blank line
+        }
+        try {
+            if (fieldCount < 10) {
+                System.out.println("Skipping invalid appointment data: insufficient fields");
+                return null;
+            }
+
+            String appointmentID = decode(0);
+            Doctor doctor = resolveDoctor();
+            if (doctor == null) {
+                System.out.println("Invalid doctor for appointment: " + appointmentID);
+                return null;
+            }
+            String patientID = decode(1);
+            User patientUser = Database.patientsMap.get(patientID);
+            Patient patient = (patientUser instanceof Patient) ? (Patient) patientUser : null;
+
+            AppointmentSlot slot = new AppointmentSlot(
+                    parseInt(3), parseInt(4), parseInt(5), parseInt(6), parseInt(7));
+            Appointment appointment = new Appointment(appointmentID, patient, doctor, slot);
+            appointment.setStatus(parseStatus(8));
+            appointment.setIsAvailable(parseBoolean(9));
+            appointment.setConsultationNotes(fieldCount > 10 ? decode(10) : "");
+
+            if (fieldCount > 11 && fieldStart[11] < fieldEnd[11]) {
+                Prescription prescription = parsePrescription(doctor.getID(), patientID);
+                if (prescription != null) {
+                    appointment.setPrescription(prescription);
+                }
+            }
+            return appointment;
+        } catch (RuntimeException e) {
+            System.out.println("Error processing appointment record at byte " + recordStart + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Finds the field boundaries of the record at the current position and
+     * advances past its terminating newline. Newlines inside quotes are kept.
+     */
+    private void scanRecord() {
+        recordStart = position;
+        fieldCount = 0;
+        int start = position;
+        boolean quoted = false;
+        boolean inQuotes = false;
+        int p = position;
+
+        while (p < limit) {
+            byte b = buffer.get(p);
+            if (inQuotes) {
+                if (b == '"') {
+                    if (p + 1 < limit && buffer.get(p + 1) == '"') {
+                        p += 2;
+                        continue;
+                    }
+                    inQuotes = false;
+                }
+                p++;
+            } else if (b == '"') {
+                inQuotes = true;
+                quoted = true;
+                p++;
+            } else if (b == ',') {
+                addField(start, p, quoted);
+                quoted = false;
+                start = ++p;
+            } else if (b == '\n') {
+                break;
+            } else {
+                p++;
+            }
+        }
+        addField(start, p, quoted);
+        position = Math.min(p + 1, limit);
+    }
+
+    private void addField(int start, int end, boolean quoted) {
+        if (fieldCount < MAX_FIELDS) {
+            // Trim surrounding whitespace, including the \r of CRLF line endings
+            while (start < end && isBlank(buffer.get(start))) start++;
+            while (end > start && isBlank(buffer.get(end - 1))) end--;
+            if (quoted && end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"') {
+                start++;
+                end--;
+            }
+            fieldStart[fieldCount] = start;
+            fieldEnd[fieldCount] = end;
+            fieldQuoted[fieldCount] = quoted;
+        }
+        fieldCount++;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private int parseInt(int field) {
+        int p = fieldStart[field];
+        int end = fieldEnd[field];
+        if (p == end) {
+            throw new NumberFormatException("empty numeric field " + field);
+        }
+        int value = 0;
+        for (; p < end; p++) {
+            int digit = buffer.get(p) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("invalid digit in field " + field);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private boolean parseBoolean(int field) {
+        int p = fieldStart[field];
+        return fieldEnd[field] - p == 4
+                && (buffer.get(p) | 0x20) == 't'
+                && (buffer.get(p + 1) | 0x20) == 'r'
+                && (buffer.get(p + 2) | 0x20) == 'u'
+                && (buffer.get(p + 3) | 0x20) == 'e';
+    }
+
+    private AppointmentStatus parseStatus(int field) {
+        int start = fieldStart[field];
+        int length = fieldEnd[field] - start;
+        for (AppointmentStatus status : AppointmentStatus.values()) {
+            byte[] name = STATUS_NAMES[status.ordinal()];
+            if (name.length != length) continue;
+            int i = 0;
+            while (i < length && (buffer.get(start + i) & 0xDF) == name[i]) i++;
+            if (i == length) return status;
+        }
+        throw new IllegalArgumentException("unknown appointment status in record");
+    }
+
+    private Doctor resolveDoctor() {
+        int start = fieldStart[2];
+        int length = fieldEnd[2] - start;
+        if (length == lastDoctorKeyLength) {
+            int i = 0;
+            while (i < length && buffer.get(start + i) == lastDoctorKey[i]) i++;
+            if (i == length) return lastDoctor;
+        }
+        User user = Database.doctorsMap.get(decode(2));
+        Doctor doctor = (user instanceof Doctor) ? (Doctor) user : null;
+        if (length <= lastDoctorKey.length) {
+            for (int i = 0; i < length; i++) lastDoctorKey[i] = buffer.get(start + i);
+            lastDoctorKeyLength = length;
+            lastDoctor = doctor;
+        }
+        return doctor;
+    }
+
+    /**
+     * Parses the prescription field, formatted as name:quantity pairs separated by ';', and
+     * the prescription status field after it. Records written before the status was saved
+     * have no status field, and their prescriptions are read as pending.
+     */
+    private Prescription parsePrescription(String doctorID, String patientID) {
+        List<Medicine.MedicineSet> medicineSets = new ArrayList<>();
+        int p = fieldStart[11];
+        int end = fieldEnd[11];
+        while (p < end) {
+            int nameStart = p;
+            while (p < end && buffer.get(p) != ':') p++;
+            int nameEnd = p++;
+            int quantity = 0;
+            while (p < end && buffer.get(p) != ';') {
+                byte b = buffer.get(p++);
+                if (b >= '0' && b <= '9') quantity = quantity * 10 + (b - '0');
+            }
+            p++; // skip ';'
+
+            String medicineName = decode(nameStart, nameEnd, false).trim();
+            Medicine medicine = Database.inventoryMap.get(medicineName);
+            if (medicine == null && !Database.isInventoryLoaded()) {
+                // Inventory is loaded on demand, so only the name is known for display
+                medicine = new Medicine(medicineName, 0, "");
+            }
+            if (medicine != null) {
+                medicineSets.add(new Medicine.MedicineSet(medicine, quantity));
+            } else {
+                System.out.println("WARNING: Medicine not found in inventory: " + medicineName);
+            }
+        }
+        if (medicineSets.isEmpty()) {
+            return null;
+        }
+        PrescriptionStatus status = fieldCount > 12 && fieldStart[12] < fieldEnd[12]
+                ? PrescriptionStatus.valueOf(decode(12).trim())
+                : PrescriptionStatus.PENDING;
+        return new Prescription(medicineSets, doctorID, patientID, status);
+    }
+
+    private String decode(int field) {
+        return decode(fieldStart[field], fieldEnd[field], fieldQuoted[field]);
+    }
+
+    /**
+     * Decodes a UTF-8 byte range into a string, collapsing doubled quotes
+     * if the field was quoted.
+     */
+    private String decode(int start, int end, boolean quoted) {
+        int length = end - start;
+        if (length == 0) {
+            return "";
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        int n = 0;
+        for (int p = start; p < end; p++) {
+            byte b = buffer.get(p);
+            scratch[n++] = b;
+            if (quoted && b == '"' && p + 1 < end && buffer.get(p + 1) == '"') {
+                p++;
+            }
+        }
+        return new String(scratch, 0, n, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,518 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.AppointmentStatus;
+import hospitalsystem.model.Appointment;
+import hospitalsystem.model.Appointment.AppointmentSlot;
+import hospitalsystem.model.Patient;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Secondary indexes over the appointments in appointmentMap: by doctor, by patient and by
+ * doctor, status and availability. Every bucket is ordered by slot time, so lookups
+ * return appointments in time order without sorting, and time ranges such as a doctor's
+ * upcoming appointments are read straight off the bucket. Lookups cost the size of their
+ * result instead of a scan of every loaded appointment. Open slots are also tracked in
+ * {@link SlotAvailability} bitmaps, which answer free-slot searches.
+ *
+ * The index is updated whenever an appointment is linked on load or saved through the
+ * repository, which every change to an appointment's patient, status or availability goes
+ * through. It remembers the keys each appointment was indexed under, so an update moves
+ * the appointment out of its old buckets.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class AppointmentIndex {
+
+    private static final int STATES = AppointmentStatus.values().length * 2;
+
+    /** Orders a bucket by slot minute, then by appointment ID for appointments in the same slot */
+    private record SlotKey(int minute, String appointmentID) implements Comparable<SlotKey> {
+        @Override
+        public int compareTo(SlotKey other) {
+            int byTime = Integer.compare(minute, other.minute);
+            return byTime != 0 ? byTime : appointmentID.compareTo(other.appointmentID);
+        }
+    }
+
+    /** Keys each appointment is currently indexed under */
+    private record Keys(SlotKey slot, String doctorID, String patientID, int state) {
+    }
+
+    private final Map<String, Keys> keys = new HashMap<>();
+    private final Map<String, NavigableMap<SlotKey, Appointment>> byDoctor = new HashMap<>();
+    private final Map<String, NavigableMap<SlotKey, Appointment>> byPatient = new HashMap<>();
+    /** Per doctor, one bucket for each combination of status and availability */
+    private final Map<String, List<NavigableMap<SlotKey, Appointment>>> byDoctorState = new HashMap<>();
+    /** One bucket for each combination of status and availability across all doctors */
+    private final List<NavigableMap<SlotKey, Appointment>> byState = buckets();
+    /** Grid cells with open slots, per doctor per day */
+    private final SlotAvailability openSlots = new SlotAvailability();
+
+    /**
+     * Indexes a new appointment, or re-indexes a changed one under its current keys.
+     *
+     * @param appointment the appointment
+     */
+    synchronized void put(Appointment appointment) {
+        String appointmentID = appointment.getAppointmentID();
+        Patient patient = appointment.getPatient();
+        Keys updated = new Keys(new SlotKey(appointment.getSlotMinute(), appointmentID),
+                appointment.getDoctor().getID(), patient == null ? null : patient.getID(),
+                state(appointment.getStatus(), appointment.getIsAvailable()));
+        Keys old = keys.put(appointmentID, updated);
+        if (old != null) {
+            unindex(old);
+        }
+        SlotKey slot = updated.slot();
+        byDoctor.computeIfAbsent(updated.doctorID(), id -> new TreeMap<>()).put(slot, appointment);
+        if (updated.patientID() != null) {
+            byPatient.computeIfAbsent(updated.patientID(), id -> new TreeMap<>()).put(slot, appointment);
+        }
+        byDoctorState.computeIfAbsent(updated.doctorID(), id -> buckets()).get(updated.state()).put(slot, appointment);
+        byState.get(updated.state()).put(slot, appointment);
+        if (appointment.getIsAvailable()) {
+            openSlots.set(updated.doctorID(), timeOf(slot));
+        }
+    }
+
+    /**
+     * Removes every appointment from the index.
+     */
+    synchronized void clear() {
+        keys.clear();
+        byDoctor.clear();
+        byPatient.clear();
+        byDoctorState.clear();
+        for (NavigableMap<SlotKey, Appointment> bucket : byState) {
+            bucket.clear();
+        }
+        openSlots.clear();
+    }
+
+    /**
+     * @param doctorID the doctor ID
+     * @param from start of the range, inclusive
+     * @param to end of the range, exclusive
+     * @return the doctor's appointments in the range, in time order
+     */
+    synchronized List<Appointment> findByDoctor(String doctorID, LocalDateTime from, LocalDateTime to) {
+        return range(byDoctor.get(doctorID), from, to);
+    }
+
+    /**
+     * @param patientID the patient ID
+     * @return the patient's appointments, in time order
+     */
+    synchronized List<Appointment> findByPatient(String patientID) {
+        return range(byPatient.get(patientID), LocalDateTime.MIN, LocalDateTime.MAX);
+    }
+
+    /**
+     * @param doctorID the doctor ID
+     * @param status the appointment status
+     * @param available the availability, or null for either
+     * @param from start of the range, inclusive
+     * @param to end of the range, exclusive
+     * @return the doctor's appointments in the range with the given status and availability, in time order
+     */
+    synchronized List<Appointment> findByDoctorAndStatus(String doctorID, AppointmentStatus status, Boolean available,
+                                                         LocalDateTime from, LocalDateTime to) {
+        List<NavigableMap<SlotKey, Appointment>> buckets = byDoctorState.get(doctorID);
+        if (buckets == null) {
+            return new ArrayList<>();
+        }
+        if (available != null) {
+            return range(buckets.get(state(status, available)), from, to);
+        }
+        return merge(range(buckets.get(state(status, true)), from, to), range(buckets.get(state(status, false)), from, to));
+    }
+
+    /**
+     * @param doctorID the doctor ID
+     * @param available the availability
+     * @return the doctor's appointments with the given availability, whatever their status, in time order
+     */
+    synchronized List<Appointment> findByDoctorAndAvailability(String doctorID, boolean available) {
+        return findByAvailability(doctorID, available, LocalDateTime.MIN, LocalDateTime.MAX);
+    }
+
+    /**
+     * Finds a doctor's earliest open slot in a time range. The bitmaps locate the first
+     * open grid cell; its slots are then read from the index.
+     *
+     * @param doctorID the doctor ID
+     * @param from start of the range, inclusive
+     * @param to end of the range, exclusive
+     * @return the earliest open slot, or null if the doctor has none in the range
+     */
+    synchronized Appointment findFirstAvailable(String doctorID, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime cell;
+        while ((cell = openSlots.nextOpenCell(doctorID, from, to)) != null) {
+            LocalDateTime cellEnd = cell.plusMinutes(SlotAvailability.GRID_MINUTES);
+            List<Appointment> open = findByAvailability(doctorID, true,
+                    cell.isAfter(from) ? cell : from, cellEnd.isBefore(to) ? cellEnd : to);
+            if (!open.isEmpty()) {
+                return open.get(0);
+            }
+            from = cellEnd; // Only slots before the start of the range are in this cell
+        }
+        return null;
+    }
+
+    /**
+     * @param from start of the range, inclusive
+     * @param to end of the range, exclusive
+     * @return the IDs of the doctors with an open slot in the range
+     */
+    synchronized List<String> findDoctorsAvailable(LocalDateTime from, LocalDateTime to) {
+        List<String> doctorIDs = new ArrayList<>();
+        for (String doctorID : openSlots.getDoctorIDs()) {
+            if (findFirstAvailable(doctorID, from, to) != null) {
+                doctorIDs.add(doctorID);
+            }
+        }
+        return doctorIDs;
+    }
+
+    /**
+     * @return the IDs of the doctors with at least one open slot
+     */
+    synchronized List<String> getDoctorIDsWithOpenSlots() {
+        return openSlots.getDoctorIDs();
+    }
+
+    /**
+     * Finds the first grid cell in which a doctor has an open slot, within a time range and
+     * the given hours of each day. The slot itself may start later in the cell than the
+     * range or the hours allow, so the cell start is only a lower bound on its time.
+     *
+     * @param doctorID the doctor ID
+     * @param from start of the range, inclusive
+     * @param to end of the range, exclusive
+     * @param dayStart the earliest time of day, inclusive
+     * @param dayEnd the latest time of day, exclusive, or null for the end of the day
+     * @return the start of the cell, or null if there is none
+     */
+    synchronized LocalDateTime findFirstOpenCell(String doctorID, LocalDateTime from, LocalDateTime to,
+                                                 LocalTime dayStart, LocalTime dayEnd) {
+        return openSlots.nextOpenCell(doctorID, from, to, dayStart, dayEnd);
+    }
+
+    /**
+     * Plans a scan for the appointments that can match the given criteria: of the indexes
+     * that cover them (the patient's bucket, the doctor's bucket, the doctor's or every
+     * doctor's buckets for the matching statuses and availability, or all state buckets)
+     * it picks the one with the fewest entries. The scan returns a superset of the matches,
+     * so the caller still tests each appointment against every criterion.
+     *
+     * @param doctorID the doctor ID, or null for any doctor
+     * @param patientID the patient ID, or null for any patient
+     * @param statuses the statuses, or null for any status
+     * @param available the availability, or null for either
+     * @param from start of the range, inclusive
+     * @param to end of the range, exclusive
+     * @param newestFirst whether to scan in reverse time order
+     * @return a scan over the chosen buckets, in time order
+     */
+    synchronized Scan scan(String doctorID, String patientID, Set<AppointmentStatus> statuses, Boolean available,
+                           LocalDateTime from, LocalDateTime to, boolean newestFirst) {
+        Set<AppointmentStatus> matching = statuses == null ? EnumSet.allOf(AppointmentStatus.class) : statuses;
+        String path = "all appointments";
+        List<NavigableMap<SlotKey, Appointment>> chosen = states(byState, matching, available);
+        if (statuses != null || available != null) {
+            path = "status index";
+        }
+        if (doctorID != null) {
+            List<NavigableMap<SlotKey, Appointment>> doctor = statuses != null || available != null
+                    ? states(byDoctorState.get(doctorID), matching, available)
+                    : bucket(byDoctor.get(doctorID));
+            if (size(doctor) <= size(chosen)) {
+                path = statuses != null || available != null ? "doctor status index" : "doctor index";
+                chosen = doctor;
+            }
+        }
+        if (patientID != null) {
+            List<NavigableMap<SlotKey, Appointment>> patient = bucket(byPatient.get(patientID));
+            if (size(patient) <= size(chosen)) {
+                path = "patient index";
+                chosen = patient;
+            }
+        }
+
+        int fromMinute = minuteBound(from);
+        int toMinute = minuteBound(to);
+        List<NavigableMap<SlotKey, Appointment>> ranges = new ArrayList<>(chosen.size());
+        for (NavigableMap<SlotKey, Appointment> bucket : chosen) {
+            if (!bucket.isEmpty() && fromMinute < toMinute) {
+                NavigableMap<SlotKey, Appointment> range =
+                        bucket.subMap(new SlotKey(fromMinute, ""), true, new SlotKey(toMinute, ""), false);
+                ranges.add(newestFirst ? range.descendingMap() : range);
+            }
+        }
+        return new Scan(path + " (" + size(chosen) + " entries)", ranges, newestFirst);
+    }
+
+    /**
+     * A merge of one or more index buckets in time order. Each bucket is read a page at a
+     * time under the index lock, so a scan that is abandoned early reads little, and the
+     * index can change between pages: appointments saved during a scan may or may not be
+     * returned, and one that moves between the scanned buckets is returned only once.
+     */
+    final class Scan implements Iterator<Appointment> {
+        private static final int MAX_PAGE_SIZE = 256;
+
+        private final String path;
+        private final List<BucketCursor> cursors = new ArrayList<>();
+        private final Comparator<SlotKey> order;
+        private int firstPageSize = 16;
+        private SlotKey last;
+        private BucketCursor next;
+
+        private Scan(String path, List<NavigableMap<SlotKey, Appointment>> ranges, boolean newestFirst) {
+            this.path = path;
+            this.order = newestFirst ? Comparator.<SlotKey>reverseOrder() : Comparator.<SlotKey>naturalOrder();
+            for (NavigableMap<SlotKey, Appointment> range : ranges) {
+                cursors.add(new BucketCursor(range));
+            }
+        }
+
+        /**
+         * @return the index the scan reads and its number of entries, for diagnostics
+         */
+        String getPath() {
+            return path;
+        }
+
+        /**
+         * Sets the size of the first page read from each bucket, such as a query's limit;
+         * later pages double in size up to a fixed maximum.
+         *
+         * @param pageSize the first page size
+         */
+        void setPageSize(int pageSize) {
+            this.firstPageSize = Math.max(1, Math.min(MAX_PAGE_SIZE, pageSize));
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                BucketCursor earliest = null;
+                for (BucketCursor cursor : cursors) {
+                    SlotKey head = cursor.head();
+                    if (head != null && (earliest == null || order.compare(head, earliest.head()) < 0)) {
+                        earliest = cursor;
+                    }
+                }
+                if (earliest == null) {
+                    return false;
+                }
+                if (earliest.head().equals(last)) {
+                    earliest.page.poll(); // The same appointment, moved to another scanned bucket
+                } else {
+                    next = earliest;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Appointment next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<SlotKey, Appointment> entry = next.page.poll();
+            next = null;
+            last = entry.getKey();
+            return entry.getValue();
+        }
+
+        /**
+         * A position in one bucket, with the page of entries read after it.
+         */
+        private final class BucketCursor {
+            private final NavigableMap<SlotKey, Appointment> range;
+            private final ArrayDeque<Map.Entry<SlotKey, Appointment>> page = new ArrayDeque<>();
+            private SlotKey readUpTo;
+            private int pageSize;
+            private boolean exhausted;
+
+            private BucketCursor(NavigableMap<SlotKey, Appointment> range) {
+                this.range = range;
+            }
+
+            private SlotKey head() {
+                if (page.isEmpty() && !exhausted) {
+                    readPage();
+                }
+                Map.Entry<SlotKey, Appointment> head = page.peek();
+                return head == null ? null : head.getKey();
+            }
+
+            private void readPage() {
+                pageSize = pageSize == 0 ? firstPageSize : Math.min(MAX_PAGE_SIZE, pageSize * 2);
+                synchronized (AppointmentIndex.this) {
+                    NavigableMap<SlotKey, Appointment> rest = readUpTo == null ? range : range.tailMap(readUpTo, false);
+                    for (Map.Entry<SlotKey, Appointment> entry : rest.entrySet()) {
+                        if (page.size() == pageSize) {
+                            break;
+                        }
+                        page.add(Map.entry(entry.getKey(), entry.getValue()));
+                    }
+                }
+                exhausted = page.size() < pageSize;
+                if (!page.isEmpty()) {
+                    readUpTo = page.peekLast().getKey();
+                }
+            }
+        }
+    }
+
+    private static List<NavigableMap<SlotKey, Appointment>> states(List<NavigableMap<SlotKey, Appointment>> buckets,
+                                                                   Set<AppointmentStatus> statuses, Boolean available) {
+        List<NavigableMap<SlotKey, Appointment>> selected = new ArrayList<>();
+        if (buckets != null) {
+            for (AppointmentStatus status : statuses) {
+                if (available == null || available) {
+                    selected.add(buckets.get(state(status, true)));
+                }
+                if (available == null || !available) {
+                    selected.add(buckets.get(state(status, false)));
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static List<NavigableMap<SlotKey, Appointment>> bucket(NavigableMap<SlotKey, Appointment> bucket) {
+        return bucket == null ? List.of() : List.of(bucket);
+    }
+
+    private static long size(List<NavigableMap<SlotKey, Appointment>> buckets) {
+        long size = 0;
+        for (NavigableMap<SlotKey, Appointment> bucket : buckets) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    private List<Appointment> findByAvailability(String doctorID, boolean available, LocalDateTime from, LocalDateTime to) {
+        List<Appointment> result = new ArrayList<>();
+        List<NavigableMap<SlotKey, Appointment>> buckets = byDoctorState.get(doctorID);
+        if (buckets != null) {
+            for (AppointmentStatus status : AppointmentStatus.values()) {
+                result = merge(result, range(buckets.get(state(status, available)), from, to));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param status the appointment status
+     * @return all appointments with the given status, in time order
+     */
+    synchronized List<Appointment> findByStatus(AppointmentStatus status) {
+        return merge(range(byState.get(state(status, true)), LocalDateTime.MIN, LocalDateTime.MAX),
+                range(byState.get(state(status, false)), LocalDateTime.MIN, LocalDateTime.MAX));
+    }
+
+    private void unindex(Keys old) {
+        SlotKey slot = old.slot();
+        remove(byDoctor, old.doctorID(), slot);
+        if (old.patientID() != null) {
+            remove(byPatient, old.patientID(), slot);
+        }
+        byDoctorState.get(old.doctorID()).get(old.state()).remove(slot);
+        byState.get(old.state()).remove(slot);
+        if ((old.state() & 1) == 1) {
+            // Keep the cell open if another open slot of the doctor starts in it
+            LocalDateTime cell = SlotAvailability.cellStart(timeOf(slot));
+            if (findByAvailability(old.doctorID(), true, cell, cell.plusMinutes(SlotAvailability.GRID_MINUTES)).isEmpty()) {
+                openSlots.clear(old.doctorID(), cell);
+            }
+        }
+    }
+
+    private static void remove(Map<String, NavigableMap<SlotKey, Appointment>> index, String key, SlotKey slot) {
+        NavigableMap<SlotKey, Appointment> bucket = index.get(key);
+        bucket.remove(slot);
+        if (bucket.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static int state(AppointmentStatus status, boolean available) {
+        return status.ordinal() * 2 + (available ? 1 : 0);
+    }
+
+    private static List<NavigableMap<SlotKey, Appointment>> buckets() {
+        List<NavigableMap<SlotKey, Appointment>> buckets = new ArrayList<>(STATES);
+        for (int i = 0; i < STATES; i++) {
+            buckets.add(new TreeMap<>());
+        }
+        return buckets;
+    }
+
+    private static LocalDateTime timeOf(SlotKey slot) {
+        return new AppointmentSlot(slot.minute()).getDateTime();
+    }
+
+    /**
+     * Converts a range bound to the first slot minute not before it, clamped to the range
+     * of slot minutes so that LocalDateTime.MIN and MAX can be used as open bounds.
+     */
+    private static int minuteBound(LocalDateTime time) {
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        long minute = Math.floorDiv(seconds, 60) + (Math.floorMod(seconds, 60) != 0 || time.getNano() != 0 ? 1 : 0);
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, minute));
+    }
+
+    /**
+     * Copies the appointments of a bucket whose slot time lies in [from, to). The empty
+     * appointment ID sorts before every real one, so it makes the bounds cover whole slots.
+     */
+    private static List<Appointment> range(NavigableMap<SlotKey, Appointment> bucket, LocalDateTime from, LocalDateTime to) {
+        int fromMinute = minuteBound(from);
+        int toMinute = minuteBound(to);
+        if (bucket == null || fromMinute >= toMinute) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(bucket.subMap(new SlotKey(fromMinute, ""), true, new SlotKey(toMinute, ""), false).values());
+    }
+
+    /**
+     * Merges two lists that are each in time order into one list in time order.
+     */
+    private static List<Appointment> merge(List<Appointment> first, List<Appointment> second) {
+        if (first.isEmpty()) {
+            return second;
+        }
+        if (second.isEmpty()) {
+            return first;
+        }
+        List<Appointment> merged = new ArrayList<>(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        while (i < first.size() && j < second.size()) {
+            merged.add(first.get(i).compareTo(second.get(j)) <= 0 ? first.get(i++) : second.get(j++));
+        }
+        merged.addAll(first.subList(i, first.size()));
+        merged.addAll(second.subList(j, second.size()));
+        return merged;
+    }
+}
@@ -0,0 +1,145 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.DataSet;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only write-ahead log for appointment mutations.
+ * Every change to an appointment is appended as one full CSV record (same layout as
+ * Appointment.csv), so a record is an upsert keyed by appointment ID. At load time the
+ * log is replayed on top of the last full snapshot in Appointment.csv, and a background
+ * task periodically compacts the log back into the CSV.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class AppointmentLog {
+
+    /** Path of the appointment mutation log */
+    static final String APPOINTMENT_LOG_PATH = "hospitalsystem/data/Appointment.log";
+
+    /** Number of logged records after which the background task compacts the log */
+    private static final int COMPACTION_THRESHOLD = 500;
+
+    /** Interval in seconds between background compaction checks */
+    private static final long COMPACTION_INTERVAL_SECONDS = 30;
+
+    /** Guards appends against a concurrent compaction */
+    static final Object LOCK = new Object();
+
+    /** Number of records appended since the last compaction */
+    private static int pendingRecords = 0;
+
+    private static ScheduledExecutorService compactor;
+
+    /**
+     * Appends appointment records to the log in a single write. The records are forced to
+     * disk by the next group commit, or immediately if group commit is disabled.
+     *
+     * @param records the appointments formatted as CSV records
+     */
+    static void append(List<String> records) {
+        StringBuilder sb = new StringBuilder();
+        for (String record : records) {
+            sb.append(record).append(System.lineSeparator());
+        }
+        synchronized (LOCK) {
+            try (FileOutputStream out = new FileOutputStream(APPOINTMENT_LOG_PATH, true)) {
+                byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                if (GroupCommitter.DELAY_MS <= 0) {
+                    out.getFD().sync();
+                }
+                pendingRecords += records.size();
+                Database.markDirty(DataSet.APPOINTMENTS);
+                Database.addBytesWritten(DataSet.APPOINTMENTS, bytes.length);
+            } catch (IOException e) {
+                System.out.println("Error appending to appointment log: " + e.getMessage());
+            }
+            Database.recordFileStamp(APPOINTMENT_LOG_PATH);
+        }
+        if (GroupCommitter.DELAY_MS > 0) {
+            GroupCommitter.requestSync();
+        }
+    }
+
+    /**
+     * Forces all appended records to disk.
+     */
+    static void sync() {
+        synchronized (LOCK) {
+            File file = new File(APPOINTMENT_LOG_PATH);
+            if (!file.exists()) {
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.force(true);
+            } catch (IOException e) {
+                System.out.println("Error syncing appointment log: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Records how many entries were found in the log when it was replayed at load time.
+     *
+     * @param count number of replayed log records
+     */
+    static void setPendingRecords(int count) {
+        synchronized (LOCK) {
+            pendingRecords = count;
+        }
+    }
+
+    /**
+     * Discards all logged records. Only called once their effect has been written
+     * to Appointment.csv, while holding {@link #LOCK}.
+     */
+    static void truncate() {
+        try (FileOutputStream out = new FileOutputStream(APPOINTMENT_LOG_PATH, false)) {
+            out.getFD().sync();
+            pendingRecords = 0;
+        } catch (IOException e) {
+            System.out.println("Error truncating appointment log: " + e.getMessage());
+        }
+        Database.recordFileStamp(APPOINTMENT_LOG_PATH);
+    }
+
+    /**
+     * Starts the background task that compacts the log into Appointment.csv
+     * once enough records have accumulated. Calling it again has no effect.
+     */
+    static synchronized void startBackgroundCompaction() {
+        if (compactor != null) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "appointment-log-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            boolean due;
+            synchronized (LOCK) {
+                due = pendingRecords >= COMPACTION_THRESHOLD;
+            }
+            if (due) {
+                try {
+                    Database.compactAppointmentLog();
+                } catch (RuntimeException e) {
+                    System.out.println("Appointment log compaction failed, will retry: " + e.getMessage());
+                }
+            }
+        }, COMPACTION_INTERVAL_SECONDS, COMPACTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,232 @@
+package hospitalsystem.data;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * On-disk index from patient and doctor IDs to the byte offsets of their records in
+ * Appointment.csv, used to hydrate a single user's appointments without parsing the
+ * whole history.
+ *
+ * The file starts with a small directory (the key of every patient and doctor together
+ * with the position and length of its offset list), followed by the offset lists
+ * themselves. Only the directory is read up front; a lookup then reads just the offsets
+ * of one key. The CSV's size and modification time are stored in the header, and the
+ * index is rebuilt with a key-only scan of the CSV whenever they no longer match.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class AppointmentOffsetIndex {
+
+    /** Path of the appointment offset index */
+    static final String APPOINTMENT_INDEX_PATH = "hospitalsystem/data/Appointment.idx";
+
+    private static final int MAGIC = 0x484D5349; // "HMSI"
+    private static final int VERSION = 1;
+    /** Bytes before the directory: magic, version, CSV size and time, highest ID number, directory length */
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4 + 4;
+
+    private final long csvSize;
+    private final long csvLastModified;
+    private final int highestAppointmentNumber;
+    private final long postingsStart;
+    private final Map<String, long[]> patientDirectory;
+    private final Map<String, long[]> doctorDirectory;
+
+    private AppointmentOffsetIndex(long csvSize, long csvLastModified, int highestAppointmentNumber,
+                                   long postingsStart, Map<String, long[]> patientDirectory,
+                                   Map<String, long[]> doctorDirectory) {
+        this.csvSize = csvSize;
+        this.csvLastModified = csvLastModified;
+        this.highestAppointmentNumber = highestAppointmentNumber;
+        this.postingsStart = postingsStart;
+        this.patientDirectory = patientDirectory;
+        this.doctorDirectory = doctorDirectory;
+    }
+
+    /**
+     * Opens the index for the given CSV file, rebuilding it first if it is missing,
+     * unreadable or out of date.
+     *
+     * @param csvPath path of the appointment CSV file
+     * @return the index directory
+     * @throws IOException if the CSV cannot be read or the index cannot be written
+     */
+    static AppointmentOffsetIndex open(String csvPath) throws IOException {
+        File csv = new File(csvPath);
+        AppointmentOffsetIndex index = read();
+        if (index == null || index.csvSize != csv.length() || index.csvLastModified != csv.lastModified()) {
+            rebuild(csvPath);
+            index = read();
+            if (index == null) {
+                throw new IOException("Could not read rebuilt index " + APPOINTMENT_INDEX_PATH);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Rebuilds the index with a single scan of the CSV that only decodes the
+     * appointment, patient and doctor ID fields.
+     *
+     * @param csvPath path of the appointment CSV file
+     * @throws IOException if the CSV cannot be read or the index cannot be written
+     */
+    static void rebuild(String csvPath) throws IOException {
+        File csv = new File(csvPath);
+        long size = csv.length();
+        long lastModified = csv.lastModified();
+        Map<String, List<Integer>> patientOffsets = new TreeMap<>();
+        Map<String, List<Integer>> doctorOffsets = new TreeMap<>();
+        int highest = 0;
+
+        ByteBuffer buffer = AppointmentCSVParser.map(csvPath);
+        AppointmentCSVParser parser = new AppointmentCSVParser(buffer);
+        parser.skipLine(); // Skip header
+        while (parser.hasNext()) {
+            int offset = parser.position();
+            if (!parser.nextRecord()) {
+                continue;
+            }
+            highest = Math.max(highest, appointmentNumber(parser.field(0)));
+            String patientID = parser.field(1);
+            if (!patientID.isEmpty()) {
+                patientOffsets.computeIfAbsent(patientID, k -> new ArrayList<>()).add(offset);
+            }
+            doctorOffsets.computeIfAbsent(parser.field(2), k -> new ArrayList<>()).add(offset);
+        }
+
+        // Lay out the directory first so that the offset list positions are known
+        ByteArrayOutputStream directoryBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream postingBytes = new ByteArrayOutputStream();
+        try (DataOutputStream directory = new DataOutputStream(directoryBytes);
+             DataOutputStream postings = new DataOutputStream(postingBytes)) {
+            for (Map<String, List<Integer>> offsets : List.of(patientOffsets, doctorOffsets)) {
+                directory.writeInt(offsets.size());
+                for (Map.Entry<String, List<Integer>> entry : offsets.entrySet()) {
+                    directory.writeUTF(entry.getKey());
+                    directory.writeInt(postings.size());
+                    directory.writeInt(entry.getValue().size());
+                    for (int offset : entry.getValue()) {
+                        postings.writeInt(offset);
+                    }
+                }
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(APPOINTMENT_INDEX_PATH)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(size);
+            out.writeLong(lastModified);
+            out.writeInt(highest);
+            out.writeInt(directoryBytes.size());
+            directoryBytes.writeTo(out);
+            postingBytes.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads the header and directory of the index file.
+     *
+     * @return the index directory, or null if the file is missing or not a valid index
+     */
+    private static AppointmentOffsetIndex read() {
+        File file = new File(APPOINTMENT_INDEX_PATH);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            int highest = in.readInt();
+            int directoryLength = in.readInt();
+            Map<String, long[]> patients = readDirectory(in);
+            Map<String, long[]> doctors = readDirectory(in);
+            return new AppointmentOffsetIndex(size, lastModified, highest,
+                    HEADER_BYTES + directoryLength, patients, doctors);
+        } catch (IOException e) {
+            System.out.println("Ignoring unreadable appointment index: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Map<String, long[]> readDirectory(DataInputStream in) throws IOException {
+        int keys = in.readInt();
+        Map<String, long[]> directory = new HashMap<>(keys * 2);
+        for (int i = 0; i < keys; i++) {
+            String key = in.readUTF();
+            long position = in.readInt() & 0xFFFFFFFFL;
+            long count = in.readInt();
+            directory.put(key, new long[] {position, count});
+        }
+        return directory;
+    }
+
+    /**
+     * @param patientID the patient's ID
+     * @return offsets of the patient's records in Appointment.csv, in file order
+     * @throws IOException if the index cannot be read
+     */
+    int[] patientOffsets(String patientID) throws IOException {
+        return readOffsets(patientDirectory.get(patientID));
+    }
+
+    /**
+     * @param doctorID the doctor's ID
+     * @return offsets of the doctor's records in Appointment.csv, in file order
+     * @throws IOException if the index cannot be read
+     */
+    int[] doctorOffsets(String doctorID) throws IOException {
+        return readOffsets(doctorDirectory.get(doctorID));
+    }
+
+    /**
+     * @return the highest numeric suffix of an APT appointment ID in the indexed CSV
+     */
+    int getHighestAppointmentNumber() {
+        return highestAppointmentNumber;
+    }
+
+    private int[] readOffsets(long[] entry) throws IOException {
+        if (entry == null) {
+            return new int[0];
+        }
+        int[] offsets = new int[(int) entry[1]];
+        try (RandomAccessFile file = new RandomAccessFile(APPOINTMENT_INDEX_PATH, "r")) {
+            file.seek(postingsStart + entry[0]);
+            byte[] bytes = new byte[offsets.length * 4];
+            file.readFully(bytes);
+            ByteBuffer.wrap(bytes).asIntBuffer().get(offsets);
+        }
+        return offsets;
+    }
+
+    /**
+     * Extracts the number from an appointment ID such as APT042.
+     *
+     * @param appointmentID the appointment ID
+     * @return the numeric part, or 0 if the ID is not in APT format
+     */
+    static int appointmentNumber(String appointmentID) {
+        if (!appointmentID.startsWith("APT")) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(appointmentID.substring(3));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.AppointmentStatus;
+import hospitalsystem.enums.PrescriptionStatus;
+import hospitalsystem.model.Appointment;
+import hospitalsystem.model.Patient;
+import hospitalsystem.model.Prescription;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A query over the loaded appointments. A query is set up with the criteria below, all of
+ * which must match, and then iterated, streamed or collected; results are in slot time
+ * order unless newest first is asked for.
+ *
+ * When it is run, the query reads whichever index covers its criteria with the fewest
+ * entries: a patient's appointments, a doctor's appointments, the doctor's or every
+ * doctor's appointments in the wanted statuses and availability, or otherwise all of
+ * them. The time range bounds that read, and the index is read lazily, a page at a time,
+ * so a query with a limit, or one whose stream is cut short, stops reading once it has
+ * enough results. Criteria the index does not cover, such as the prescription status,
+ * are tested on each appointment read.
+ *
+ * Appointments saved while a query is being iterated may or may not be included.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class AppointmentQuery implements Iterable<Appointment> {
+
+    private final AppointmentIndex index;
+    private String doctorID;
+    private String patientID;
+    private EnumSet<AppointmentStatus> statuses;
+    private Boolean available;
+    private LocalDateTime from = LocalDateTime.MIN;
+    private LocalDateTime to = LocalDateTime.MAX;
+    private PrescriptionStatus prescriptionStatus;
+    private boolean newestFirst;
+    private int limit = Integer.MAX_VALUE;
+
+    /**
+     * @param index the index the query reads
+     */
+    AppointmentQuery(AppointmentIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Only includes appointments with the given doctor.
+     *
+     * @param doctorID the doctor ID
+     * @return this query
+     */
+    public AppointmentQuery withDoctor(String doctorID) {
+        this.doctorID = doctorID;
+        return this;
+    }
+
+    /**
+     * Only includes appointments with the given patient.
+     *
+     * @param patientID the patient ID
+     * @return this query
+     */
+    public AppointmentQuery withPatient(String patientID) {
+        this.patientID = patientID;
+        return this;
+    }
+
+    /**
+     * Only includes appointments with one of the given statuses.
+     *
+     * @param first a status
+     * @param rest any further statuses
+     * @return this query
+     */
+    public AppointmentQuery withStatus(AppointmentStatus first, AppointmentStatus... rest) {
+        this.statuses = EnumSet.of(first, rest);
+        return this;
+    }
+
+    /**
+     * Only includes appointments with any status except the given ones.
+     *
+     * @param first a status to leave out
+     * @param rest any further statuses to leave out
+     * @return this query
+     */
+    public AppointmentQuery withStatusNot(AppointmentStatus first, AppointmentStatus... rest) {
+        this.statuses = EnumSet.complementOf(EnumSet.of(first, rest));
+        return this;
+    }
+
+    /**
+     * Only includes slots that are, or are not, open for booking.
+     *
+     * @param available the availability
+     * @return this query
+     */
+    public AppointmentQuery available(boolean available) {
+        this.available = available;
+        return this;
+    }
+
+    /**
+     * Only includes appointments with a slot in the given time range.
+     *
+     * @param from start of the range, inclusive
+     * @param to end of the range, exclusive
+     * @return this query
+     */
+    public AppointmentQuery between(LocalDateTime from, LocalDateTime to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    /**
+     * Only includes appointments with a prescription in the given status.
+     *
+     * @param status the prescription status
+     * @return this query
+     */
+    public AppointmentQuery withPrescriptionStatus(PrescriptionStatus status) {
+        this.prescriptionStatus = status;
+        return this;
+    }
+
+    /**
+     * Returns the latest appointments first.
+     *
+     * @return this query
+     */
+    public AppointmentQuery newestFirst() {
+        this.newestFirst = true;
+        return this;
+    }
+
+    /**
+     * Returns at most the given number of appointments.
+     *
+     * @param limit the maximum number of appointments
+     * @return this query
+     */
+    public AppointmentQuery limit(int limit) {
+        this.limit = Math.max(0, limit);
+        return this;
+    }
+
+    /**
+     * @return the matching appointments
+     */
+    public List<Appointment> list() {
+        List<Appointment> appointments = new ArrayList<>();
+        for (Appointment appointment : this) {
+            appointments.add(appointment);
+        }
+        return appointments;
+    }
+
+    /**
+     * @return the first matching appointment, or null if there is none
+     */
+    public Appointment first() {
+        Iterator<Appointment> iterator = iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * @return a sequential stream of the matching appointments, read from the index as
+     *         the stream is consumed
+     */
+    public Stream<Appointment> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * @return the index the query would read and its number of entries, for diagnostics
+     */
+    public String explain() {
+        return scan().getPath();
+    }
+
+    /**
+     * @return an iterator over the matching appointments
+     */
+    @Override
+    public Iterator<Appointment> iterator() {
+        AppointmentIndex.Scan scan = scan();
+        scan.setPageSize(limit);
+
+        return new Iterator<>() {
+            private int returned;
+            private Appointment next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && returned < limit && scan.hasNext()) {
+                    Appointment candidate = scan.next();
+                    if (matches(candidate)) {
+                        next = candidate;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Appointment next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Appointment appointment = next;
+                next = null;
+                returned++;
+                return appointment;
+            }
+        };
+    }
+
+    private AppointmentIndex.Scan scan() {
+        return index.scan(doctorID, patientID, statuses, available, from, to, newestFirst);
+    }
+
+    /**
+     * Tests an appointment read from the index against every criterion, as the index may
+     * not cover them all and the appointment may have changed since it was indexed.
+     */
+    private boolean matches(Appointment appointment) {
+        if (doctorID != null && !doctorID.equals(appointment.getDoctor().getID())) {
+            return false;
+        }
+        if (patientID != null) {
+            Patient patient = appointment.getPatient();
+            if (patient == null || !patientID.equals(patient.getID())) {
+                return false;
+            }
+        }
+        if (statuses != null && !statuses.contains(appointment.getStatus())) {
+            return false;
+        }
+        if (available != null && available != appointment.getIsAvailable()) {
+            return false;
+        }
+        if (prescriptionStatus != null) {
+            Prescription prescription = appointment.getPrescription();
+            if (prescription == null || prescription.getStatus() != prescriptionStatus) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
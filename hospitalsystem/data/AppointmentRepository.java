@@ -0,0 +1,132 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.AppointmentStatus;
+import hospitalsystem.model.Appointment;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Access to appointments, independent of how they are stored.
+ * Lookups other than {@link #findAll()} return appointments in slot time order; time
+ * ranges include their start and exclude their end.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public interface AppointmentRepository {
+
+    /**
+     * @param appointmentID the appointment ID
+     * @return the appointment, or null if it does not exist or is not loaded
+     */
+    Appointment findById(String appointmentID);
+
+    /**
+     * @return a live view of all loaded appointments
+     */
+    Collection<Appointment> findAll();
+
+    /**
+     * @param doctorID the doctor ID
+     * @return the doctor's loaded appointments
+     */
+    List<Appointment> findByDoctor(String doctorID);
+
+    /**
+     * @param doctorID the doctor ID
+     * @param from start of the time range
+     * @param to end of the time range
+     * @return the doctor's loaded appointments with a slot in the range
+     */
+    List<Appointment> findByDoctorBetween(String doctorID, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * @param patientID the patient ID
+     * @return the patient's loaded appointments
+     */
+    List<Appointment> findByPatient(String patientID);
+
+    /**
+     * @param doctorID the doctor ID
+     * @param status the appointment status
+     * @return the doctor's loaded appointments with the given status
+     */
+    List<Appointment> findByDoctorAndStatus(String doctorID, AppointmentStatus status);
+
+    /**
+     * @param doctorID the doctor ID
+     * @param status the appointment status
+     * @param available whether the appointment slot is open for booking
+     * @return the doctor's loaded appointments with the given status and availability
+     */
+    List<Appointment> findByDoctorAndStatus(String doctorID, AppointmentStatus status, boolean available);
+
+    /**
+     * @param doctorID the doctor ID
+     * @param status the appointment status
+     * @param from start of the time range
+     * @param to end of the time range
+     * @return the doctor's loaded appointments with the given status and a slot in the range
+     */
+    List<Appointment> findByDoctorAndStatusBetween(String doctorID, AppointmentStatus status,
+                                                   LocalDateTime from, LocalDateTime to);
+
+    /**
+     * @param doctorID the doctor ID
+     * @return the doctor's loaded slots that are open for booking
+     */
+    List<Appointment> findAvailableByDoctor(String doctorID);
+
+    /**
+     * @param doctorID the doctor ID
+     * @param from start of the time range
+     * @param to end of the time range
+     * @return the doctor's earliest loaded slot in the range that is open for booking, or null if there is none
+     */
+    Appointment findFirstAvailableByDoctor(String doctorID, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * @param from start of the time range
+     * @param to end of the time range
+     * @return the IDs of the doctors with a loaded slot in the range that is open for booking
+     */
+    List<String> findDoctorsAvailableBetween(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Starts a search for the earliest loaded slots open for booking across doctors.
+     *
+     * @param from the earliest acceptable slot time
+     * @return a search that can be narrowed with filters and then iterated
+     */
+    AvailableSlotSearch searchAvailable(LocalDateTime from);
+
+    /**
+     * Starts a query over the loaded appointments.
+     *
+     * @return a query that can be narrowed with criteria and then iterated
+     */
+    AppointmentQuery query();
+
+    /**
+     * @param status the appointment status
+     * @return all loaded appointments with the given status
+     */
+    List<Appointment> findByStatus(AppointmentStatus status);
+
+    /**
+     * Adds an appointment, or records that an existing appointment was changed, so that
+     * the change is persisted.
+     *
+     * @param appointment the new or changed appointment
+     */
+    void save(Appointment appointment);
+
+    /**
+     * Saves changes to several appointments together, persisting them in a single write.
+     *
+     * @param appointments the new or changed appointments
+     */
+    void saveAll(List<Appointment> appointments);
+}
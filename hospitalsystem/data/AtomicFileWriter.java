@@ -0,0 +1,113 @@
+package hospitalsystem.data;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Buffered writer that replaces a file crash-safely.
+ * Text is written to a temporary file next to the target; {@link #commit()} forces it to
+ * disk and atomically renames it over the target, so the target always holds either the
+ * old or the new content in full. Closing the writer without committing discards the
+ * temporary file and leaves the target untouched. Writers opened with
+ * {@link #openCompressed(String)} gzip the text on its way to the file.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class AtomicFileWriter extends BufferedWriter {
+
+    private final FileOutputStream out;
+    private final GZIPOutputStream gzip;
+    private final Path target;
+    private final Path temp;
+    private boolean committed = false;
+
+    private AtomicFileWriter(FileOutputStream out, GZIPOutputStream gzip, Path target, Path temp) {
+        super(new OutputStreamWriter(gzip != null ? gzip : out));
+        this.out = out;
+        this.gzip = gzip;
+        this.target = target;
+        this.temp = temp;
+    }
+
+    /**
+     * Opens a writer that will replace the given file when committed.
+     *
+     * @param filePath path of the file to replace
+     * @return the writer
+     * @throws IOException if the temporary file cannot be created
+     */
+    public static AtomicFileWriter open(String filePath) throws IOException {
+        Path target = Paths.get(filePath);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        return new AtomicFileWriter(new FileOutputStream(temp.toFile()), null, target, temp);
+    }
+
+    /**
+     * Opens a writer that will replace the given file with gzip-compressed text when committed.
+     *
+     * @param filePath path of the file to replace
+     * @return the writer
+     * @throws IOException if the temporary file cannot be created
+     */
+    public static AtomicFileWriter openCompressed(String filePath) throws IOException {
+        Path target = Paths.get(filePath);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp.toFile());
+        return new AtomicFileWriter(out, new GZIPOutputStream(out, 1 << 16), target, temp);
+    }
+
+    /**
+     * Forces the written content to disk and renames it over the target file.
+     *
+     * @throws IOException if the content cannot be written or the file cannot be replaced
+     */
+    public void commit() throws IOException {
+        flush();
+        if (gzip != null) {
+            gzip.finish();
+        }
+        out.getFD().sync();
+        super.close();
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+        syncDirectory();
+    }
+
+    /**
+     * Closes the writer, discarding the temporary file if it was not committed.
+     *
+     * @throws IOException if the writer cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            super.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Makes the rename itself durable where the platform allows syncing a directory.
+     */
+    private void syncDirectory() {
+        Path directory = target.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            // Not supported on every platform; the rename is still atomic
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package hospitalsystem.data;
+
+import hospitalsystem.model.Appointment;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Search for the earliest slots open for booking with any doctor. Each doctor's open slots
+ * are in time order in the appointment index, so the search keeps one cursor per doctor in
+ * a priority queue and merges them: the earliest cursor is taken and moved on to that
+ * doctor's next open slot.
+ *
+ * Cursors start out at the first open grid cell of the availability bitmaps, a lower bound
+ * on the doctor's next slot that costs a word scan to find. A cursor is only resolved to
+ * the actual slot once it reaches the head of the queue, so taking the first few results
+ * reads the slots of a few doctors instead of all of them, and the daily hours filter masks
+ * the bitmaps instead of skipping slots one at a time.
+ *
+ * A search is set up with the optional filters below and then iterated. Each doctor's next
+ * slot is looked up as the iteration reaches it, so a slot booked meanwhile is skipped if
+ * it has not been returned yet.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class AvailableSlotSearch implements Iterable<Appointment> {
+
+    /**
+     * A doctor's position in the search: either a resolved open slot, or, while slot is
+     * null, the earliest time the doctor's next open slot can start.
+     */
+    private record Cursor(LocalDateTime time, String doctorID, Appointment slot) implements Comparable<Cursor> {
+        @Override
+        public int compareTo(Cursor other) {
+            int byTime = time.compareTo(other.time);
+            return byTime != 0 ? byTime : doctorID.compareTo(other.doctorID);
+        }
+    }
+
+    private final AppointmentIndex index;
+    private final LocalDateTime from;
+    private LocalDateTime to = LocalDateTime.MAX;
+    private LocalTime dayStart = LocalTime.MIN;
+    private LocalTime dayEnd;
+    private Collection<String> doctorIDs;
+
+    /**
+     * @param index the index whose open slots are searched
+     * @param from the earliest acceptable slot time
+     */
+    AvailableSlotSearch(AppointmentIndex index, LocalDateTime from) {
+        this.index = index;
+        this.from = from;
+    }
+
+    /**
+     * Only includes slots before the given time.
+     *
+     * @param to end of the date window, exclusive
+     * @return this search
+     */
+    public AvailableSlotSearch until(LocalDateTime to) {
+        this.to = to;
+        return this;
+    }
+
+    /**
+     * Only includes slots starting within the given hours of each day, such as mornings.
+     *
+     * @param dayStart the earliest time of day, inclusive
+     * @param dayEnd the latest time of day, exclusive and after dayStart
+     * @return this search
+     */
+    public AvailableSlotSearch betweenTimes(LocalTime dayStart, LocalTime dayEnd) {
+        this.dayStart = dayStart;
+        this.dayEnd = dayEnd;
+        return this;
+    }
+
+    /**
+     * Only includes slots of the given doctors, instead of every doctor with an open slot.
+     *
+     * @param doctorIDs the IDs of the doctors to search
+     * @return this search
+     */
+    public AvailableSlotSearch withDoctors(Collection<String> doctorIDs) {
+        this.doctorIDs = doctorIDs;
+        return this;
+    }
+
+    /**
+     * @param limit the maximum number of slots to return
+     * @return the earliest open slots matching the search, in time order
+     */
+    public List<Appointment> first(int limit) {
+        List<Appointment> slots = new ArrayList<>(Math.max(0, limit));
+        Iterator<Appointment> iterator = iterator();
+        while (slots.size() < limit && iterator.hasNext()) {
+            slots.add(iterator.next());
+        }
+        return slots;
+    }
+
+    /**
+     * @return an iterator over the open slots matching the search, in time order of slot
+     *         and then doctor ID
+     */
+    @Override
+    public Iterator<Appointment> iterator() {
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>();
+        for (String doctorID : doctorIDs != null ? doctorIDs : index.getDoctorIDsWithOpenSlots()) {
+            advance(cursors, doctorID, from);
+        }
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                resolveHead(cursors);
+                return !cursors.isEmpty();
+            }
+
+            @Override
+            public Appointment next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Cursor earliest = cursors.poll();
+                // Another open slot of the same doctor at the same instant would be a duplicate
+                advance(cursors, earliest.doctorID(), earliest.time().plusNanos(1));
+                return earliest.slot();
+            }
+        };
+    }
+
+    /**
+     * Queues a doctor's cursor at the first open cell at or after a time, if there is one.
+     */
+    private void advance(PriorityQueue<Cursor> cursors, String doctorID, LocalDateTime after) {
+        LocalDateTime cell = index.findFirstOpenCell(doctorID, after, to, dayStart, dayEnd);
+        if (cell != null) {
+            cursors.add(new Cursor(cell.isAfter(after) ? cell : after, doctorID, null));
+        }
+    }
+
+    /**
+     * Resolves cursors at the head of the queue until the head is an actual slot, or the
+     * queue is empty. A resolved slot is never earlier than its cursor's bound, so it goes
+     * back into the queue in order; a slot outside the daily hours, which can happen where
+     * a cell straddles their edge, moves the cursor past it.
+     */
+    private void resolveHead(PriorityQueue<Cursor> cursors) {
+        Cursor head;
+        while ((head = cursors.peek()) != null && head.slot() == null) {
+            cursors.poll();
+            Appointment slot = index.findFirstAvailable(head.doctorID(), head.time(), to);
+            if (slot == null) {
+                continue;
+            }
+            LocalDateTime time = slot.getSlot().getDateTime();
+            LocalTime timeOfDay = time.toLocalTime();
+            if (timeOfDay.isBefore(dayStart) || (dayEnd != null && !timeOfDay.isBefore(dayEnd))) {
+                advance(cursors, head.doctorID(), time.plusNanos(1));
+            } else {
+                cursors.add(new Cursor(time, head.doctorID(), slot));
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.DataSet;
+import hospitalsystem.model.Appointment;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Log-structured binary storage engine. All data lives in a single append-only file of
+ * checksummed entries: saving a data set appends a full image of it, and every appointment
+ * change appends just that appointment. Loading a data set reads its latest image and, for
+ * appointments, replays the changes appended after it. Superseded entries are dropped by
+ * rewriting the file once they make up more than half of it.
+ *
+ * Data sets that have never been saved to the file are seeded from their CSV files. The
+ * first appointment change after that writes a full image of the appointments instead of
+ * the change, as changes are only replayed over an image.
+ * Entries use the section encoding of {@link DatabaseSnapshot}. A torn entry at the end of
+ * the file, left by a crash during an append, is discarded when the file is opened.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class BinaryStorageEngine implements StorageEngine {
+
+    /** Path of the binary data file */
+    static final String STORE_PATH = "hospitalsystem/data/Database.bin";
+
+    private static final int MAGIC = 0x484D5342; // "HMSB"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 8;
+    /** Entry header: kind, data set, payload length and CRC-32 of the payload */
+    private static final int ENTRY_HEADER_BYTES = 1 + 1 + 4 + 4;
+    private static final byte IMAGE = 0;
+    private static final byte APPOINTMENT = 1;
+    /** Smallest file worth compacting */
+    private static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+    private final Object lock = new Object();
+    private FileChannel channel;
+    /** Position and length of the latest image of each data set, or null if there is none */
+    private final long[][] images = new long[DataSet.values().length][];
+    /** Position and length of each appointment change appended after the latest appointment image */
+    private final List<long[]> appointmentChanges = new ArrayList<>();
+    private long appointmentChangeBytes = 0;
+
+    @Override
+    public String getName() {
+        return "binary";
+    }
+
+    @Override
+    public void load(DataSet set) {
+        long startTime = System.nanoTime();
+        ByteBuffer image;
+        List<ByteBuffer> changes = new ArrayList<>();
+        synchronized (lock) {
+            try {
+                open();
+                long[] location = images[set.ordinal()];
+                image = location == null ? null : read(location);
+                if (image != null && set == DataSet.APPOINTMENTS) {
+                    for (long[] change : appointmentChanges) {
+                        changes.add(read(change));
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Error reading " + set + " from " + STORE_PATH + ": " + e.getMessage());
+                return;
+            }
+        }
+        if (image == null) {
+            CsvStorageEngine.seedFromCSV(set);
+            Database.markDirty(set); // Written to the file on the next save
+            return;
+        }
+
+        Map<String, Appointment> appointments = new LinkedHashMap<>();
+        DatabaseSnapshot.decode(set, image, appointments);
+        if (set == DataSet.APPOINTMENTS) {
+            for (ByteBuffer change : changes) {
+                DatabaseSnapshot.decode(set, change, appointments);
+            }
+            for (Appointment appointment : appointments.values()) {
+                Database.linkAppointment(appointment);
+            }
+            if (!changes.isEmpty()) {
+                Database.markDirty(DataSet.APPOINTMENTS); // Folded into a new image on the next save
+            }
+        }
+        System.out.printf("Loaded %s from %s in %d ms%n",
+                set, STORE_PATH, (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    @Override
+    public boolean loadAppointmentsFor(String userID, boolean isPatient) {
+        return false;
+    }
+
+    @Override
+    public void loadAppointmentHistory(String patientID) {
+        // All appointments are loaded
+    }
+
+    @Override
+    public boolean isStale(DataSet set) {
+        return false; // Only this process writes the file
+    }
+
+    @Override
+    public void appointmentsChanged(List<Appointment> appointments) {
+        List<Appointment> changed = appointments;
+        try {
+            synchronized (lock) {
+                open();
+                if (images[DataSet.APPOINTMENTS.ordinal()] == null && Database.isLoaded(DataSet.APPOINTMENTS)) {
+                    // Changes are only replayed over an image, so the first change writes one that includes it
+                    long[] image = append(IMAGE, DataSet.APPOINTMENTS, DatabaseSnapshot.encode(DataSet.APPOINTMENTS));
+                    images[DataSet.APPOINTMENTS.ordinal()] = image;
+                    appointmentChanges.clear();
+                    appointmentChangeBytes = 0;
+                    Database.addBytesWritten(DataSet.APPOINTMENTS, ENTRY_HEADER_BYTES + image[1]);
+                    changed = List.of();
+                }
+                for (Appointment appointment : changed) {
+                    long[] change = append(APPOINTMENT, DataSet.APPOINTMENTS, DatabaseSnapshot.encodeAppointment(appointment));
+                    appointmentChanges.add(change);
+                    appointmentChangeBytes += ENTRY_HEADER_BYTES + change[1];
+                    Database.addBytesWritten(DataSet.APPOINTMENTS, ENTRY_HEADER_BYTES + change[1]);
+                }
+                if (GroupCommitter.DELAY_MS <= 0) {
+                    channel.force(false);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error appending to " + STORE_PATH + ": " + e.getMessage());
+        }
+        if (GroupCommitter.DELAY_MS > 0) {
+            GroupCommitter.requestSync();
+        }
+    }
+
+    @Override
+    public void sync() {
+        synchronized (lock) {
+            try {
+                if (channel != null) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                System.out.println("Error syncing " + STORE_PATH + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void save(DataSet set) {
+        try {
+            synchronized (lock) {
+                open();
+                long[] image = append(IMAGE, set, DatabaseSnapshot.encode(set));
+                channel.force(false);
+                images[set.ordinal()] = image;
+                if (set == DataSet.APPOINTMENTS) {
+                    appointmentChanges.clear();
+                    appointmentChangeBytes = 0;
+                }
+                Database.addBytesWritten(set, ENTRY_HEADER_BYTES + image[1]);
+            }
+            System.out.println("Successfully saved " + set + " to " + STORE_PATH);
+        } catch (IOException e) {
+            System.out.println("Error saving " + set + " to " + STORE_PATH + ": " + e.getMessage());
+            throw new RuntimeException("Failed to save " + set, e);
+        }
+    }
+
+    /**
+     * Rewrites the file with only the latest image of each data set once superseded
+     * entries make up more than half of it. Requires all data sets to be loaded, as the
+     * images are encoded from the maps.
+     */
+    @Override
+    public void checkpoint() {
+        for (DataSet set : DataSet.values()) {
+            if (!Database.isLoaded(set)) {
+                return;
+            }
+        }
+        synchronized (lock) {
+            try {
+                open();
+                long size = channel.size();
+                long live = FILE_HEADER_BYTES + appointmentChangeBytes;
+                for (long[] image : images) {
+                    live += image == null ? 0 : ENTRY_HEADER_BYTES + image[1];
+                }
+                if (size < MIN_COMPACTION_BYTES || size < 2 * live) {
+                    return;
+                }
+                compact(size);
+            } catch (IOException e) {
+                System.out.println("Error compacting " + STORE_PATH + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void compact(long sizeBefore) throws IOException {
+        long startTime = System.nanoTime();
+        Path target = new File(STORE_PATH).toPath();
+        Path temp = new File(STORE_PATH + ".tmp").toPath();
+        long[][] compacted = new long[images.length][];
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.write(fileHeader());
+            for (DataSet set : DataSet.values()) {
+                byte[] payload = DatabaseSnapshot.encode(set);
+                compacted[set.ordinal()] = new long[] {out.position() + ENTRY_HEADER_BYTES, payload.length};
+                out.write(entry(IMAGE, set, payload));
+            }
+            out.force(true);
+        }
+        channel.close();
+        channel = null;
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.arraycopy(compacted, 0, images, 0, images.length);
+        appointmentChanges.clear();
+        appointmentChangeBytes = 0;
+        open();
+        System.out.printf("Compacted %s from %d KB to %d KB in %d ms%n", STORE_PATH,
+                sizeBefore / 1024, channel.size() / 1024, (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    /**
+     * Opens the file on first use, creating it if needed, and scans its entries.
+     */
+    private void open() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        channel = FileChannel.open(new File(STORE_PATH).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < FILE_HEADER_BYTES) {
+            channel.truncate(0);
+            channel.write(fileHeader(), 0);
+            channel.force(true);
+        }
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+        channel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            channel.close();
+            channel = null;
+            throw new IOException("Not a data file of this version");
+        }
+        scan();
+    }
+
+    /**
+     * Reads the entry headers, remembering the latest image of each data set and the
+     * appointment changes after it, and cuts off a torn entry at the end.
+     */
+    private void scan() throws IOException {
+        long size = channel.size();
+        long position = FILE_HEADER_BYTES;
+        ByteBuffer entryHeader = ByteBuffer.allocate(ENTRY_HEADER_BYTES);
+        while (position + ENTRY_HEADER_BYTES <= size) {
+            entryHeader.clear();
+            channel.read(entryHeader, position);
+            entryHeader.flip();
+            byte kind = entryHeader.get();
+            int ordinal = entryHeader.get();
+            int length = entryHeader.getInt();
+            int checksum = entryHeader.getInt();
+            long payloadStart = position + ENTRY_HEADER_BYTES;
+            if (length < 0 || payloadStart + length > size || ordinal < 0 || ordinal >= images.length
+                    || checksum(read(new long[] {payloadStart, length})) != checksum) {
+                break;
+            }
+            long[] location = {payloadStart, length};
+            if (kind == IMAGE) {
+                images[ordinal] = location;
+                if (ordinal == DataSet.APPOINTMENTS.ordinal()) {
+                    appointmentChanges.clear();
+                    appointmentChangeBytes = 0;
+                }
+            } else {
+                appointmentChanges.add(location);
+                appointmentChangeBytes += ENTRY_HEADER_BYTES + length;
+            }
+            position = payloadStart + length;
+        }
+        if (position < size) {
+            System.out.println("Discarding " + (size - position) + " bytes of incomplete entries in " + STORE_PATH);
+            channel.truncate(position);
+        }
+    }
+
+    /**
+     * Appends an entry at the end of the file.
+     *
+     * @return the position and length of its payload
+     */
+    private long[] append(byte kind, DataSet set, byte[] payload) throws IOException {
+        long position = channel.size();
+        channel.write(entry(kind, set, payload), position);
+        return new long[] {position + ENTRY_HEADER_BYTES, payload.length};
+    }
+
+    private ByteBuffer read(long[] location) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) location[1]);
+        channel.read(buffer, location[0]);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static ByteBuffer entry(byte kind, DataSet set, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_HEADER_BYTES + payload.length);
+        buffer.put(kind).put((byte) set.ordinal()).putInt(payload.length).putInt(checksum(ByteBuffer.wrap(payload)));
+        buffer.put(payload);
+        return buffer.flip();
+    }
+
+    private static ByteBuffer fileHeader() {
+        return ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+    }
+
+    private static int checksum(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,106 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.DataSet;
+import hospitalsystem.model.Appointment;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The default storage engine: one CSV file per data set. Appointment changes are
+ * appended to the appointment log and folded into Appointment.csv by compaction; a
+ * binary snapshot and an offset index speed up loading. Compaction also seals closed
+ * months into the {@link AppointmentArchive}, which is only read for history views.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class CsvStorageEngine implements StorageEngine {
+
+    @Override
+    public String getName() {
+        return "csv";
+    }
+
+    @Override
+    public void load(DataSet set) {
+        loadFromCSV(set);
+        if (set == DataSet.APPOINTMENTS) {
+            AppointmentLog.startBackgroundCompaction();
+        }
+    }
+
+    /**
+     * Seeds a data set the calling engine does not hold yet from the CSV files,
+     * including all archived appointments as current ones.
+     *
+     * @param set the data set to load
+     */
+    static void seedFromCSV(DataSet set) {
+        loadFromCSV(set);
+        if (set == DataSet.APPOINTMENTS) {
+            Database.loadArchivedAppointments(null, false);
+        }
+    }
+
+    /**
+     * Loads a data set from its CSV file, or from the snapshot while it mirrors the file.
+     *
+     * @param set the data set to load
+     */
+    private static void loadFromCSV(DataSet set) {
+        switch (set) {
+            case STAFF -> Database.loadStaffFromCSV();
+            case PATIENTS -> Database.loadPatientsFromCSV();
+            case INVENTORY -> Database.loadInventoryFromCSV();
+            case APPOINTMENTS -> Database.loadAppointmentsFromCSV();
+            case REQUESTS -> Database.loadRequestsFromCSV();
+        }
+    }
+
+    @Override
+    public boolean loadAppointmentsFor(String userID, boolean isPatient) {
+        Database.hydrateAppointments(userID, isPatient);
+        return true;
+    }
+
+    @Override
+    public void loadAppointmentHistory(String patientID) {
+        Database.loadArchivedAppointments(patientID, true);
+    }
+
+    @Override
+    public boolean isStale(DataSet set) {
+        return Database.isCSVStale(set);
+    }
+
+    @Override
+    public void appointmentsChanged(List<Appointment> appointments) {
+        List<String> records = new ArrayList<>(appointments.size());
+        for (Appointment appointment : appointments) {
+            records.add(Database.formatAppointmentToCSV(appointment));
+        }
+        AppointmentLog.append(records);
+    }
+
+    @Override
+    public void sync() {
+        AppointmentLog.sync();
+    }
+
+    @Override
+    public void save(DataSet set) {
+        switch (set) {
+            case STAFF -> Database.saveStaffToCSV();
+            case PATIENTS -> Database.savePatientToCSV();
+            case INVENTORY -> Database.saveInventoryToCSV();
+            case APPOINTMENTS -> Database.compactAppointmentLog();
+            case REQUESTS -> Database.saveRequestsToCSV();
+        }
+    }
+
+    @Override
+    public void checkpoint() {
+        Database.writeSnapshotIfStale();
+    }
+}
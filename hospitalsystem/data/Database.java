@@ -4,20 +4,33 @@ import hospitalsystem.enums.*;
 import hospitalsystem.model.*;
 import hospitalsystem.model.Appointment.AppointmentSlot;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
 /**
  * Database management class for the hospital system.
- * Handles all data persistence operations including loading from and saving to CSV files,
- * and maintains in-memory data structures for various hospital system entities.
+ * Maintains in-memory data structures for various hospital system entities and loads and
+ * saves them through the selected {@link StorageEngine}. Control classes access the data
+ * through the repositories returned by {@link #users()}, {@link #appointments()},
+ * {@link #inventory()} and {@link #requests()}.
  *
  * This class provides centralized data management for:
  * - Users (Patients, Doctors, Administrators, Pharmacists)
@@ -31,24 +44,29 @@ import java.util.stream.Collectors;
  */
 public class Database {
 
-    // HashMaps
+    // Maps holding the loaded data, accessed by control classes through the repositories.
+    // Concurrent because group commits save them from a background thread
     /** Maps user IDs to Patient objects */
-    public static Map<String, User> patientsMap = new HashMap<>();
+    static final Map<String, User> patientsMap = new ConcurrentHashMap<>();
     /** Maps user IDs to Doctor objects */
-    public static Map<String, User> doctorsMap = new HashMap<>();
+    static final Map<String, User> doctorsMap = new ConcurrentHashMap<>();
     /** Maps user IDs to Administrator objects */
-    public static Map<String, User> adminsMap = new HashMap<>();
+    static final Map<String, User> adminsMap = new ConcurrentHashMap<>();
     /** Maps user IDs to Pharmacist objects */
-    public static Map<String, User> pharmsMap = new HashMap<>();
+    static final Map<String, User> pharmsMap = new ConcurrentHashMap<>();
     /** Maps medicine names to Medicine objects */
-    public static Map<String, Medicine> inventoryMap = new HashMap<>();
+    static final Map<String, Medicine> inventoryMap = new ConcurrentHashMap<>();
     /** Maps request IDs to ReplenishmentRequest objects */
-    public static Map<Integer, ReplenishmentRequest> requestMap = new HashMap<>();
+    static final Map<Integer, ReplenishmentRequest> requestMap = new ConcurrentHashMap<>();
     /** Maps appointment IDs to Appointment objects */
-    public static HashMap<String, Appointment> appointmentMap = new HashMap<>();
+    static final Map<String, Appointment> appointmentMap = new ConcurrentHashMap<>();
+    /** Secondary indexes over appointmentMap by doctor, patient and status */
+    static final AppointmentIndex appointmentIndex = new AppointmentIndex();
+    /** Batches of every medicine in inventoryMap by expiration date */
+    static final ExpiryIndex expiryIndex = new ExpiryIndex();
 
     // CSV Constants
-    private static final String APPOINTMENT_CSV_HEADER = "AppointmentID,PatientID,DoctorID,Year,Month,Day,Hour,Minute,Status,IsAvailable,ConsultationNotes,Prescriptions";
+    static final String APPOINTMENT_CSV_HEADER = "AppointmentID,PatientID,DoctorID,Year,Month,Day,Hour,Minute,Status,IsAvailable,ConsultationNotes,Prescriptions,PrescriptionStatus";
     private static final String APPOINTMENT_CSV_PATH = "hospitalsystem/data/Appointment.csv";
 
     private static final String PATIENT_CSV_HEADER = "Patient ID,Name,Date of Birth,Gender,Blood Type,Phone Number,Email,Password";
@@ -62,74 +80,615 @@ public class Database {
 
     private static final String REQUEST_CSV_HEADER = "RequestID,MedicineName,RequestedQuantity,Status";
     private static final String REQUEST_CSV_PATH = "hospitalsystem/data/Replenishment_Requests.csv";
+
+    /** The CSV file backing each data set */
+    private static final Map<DataSet, String> CSV_PATHS = new EnumMap<>(Map.of(
+            DataSet.STAFF, STAFF_CSV_PATH,
+            DataSet.PATIENTS, PATIENT_CSV_PATH,
+            DataSet.INVENTORY, INVENTORY_CSV_PATH,
+            DataSet.APPOINTMENTS, APPOINTMENT_CSV_PATH,
+            DataSet.REQUESTS, REQUEST_CSV_PATH));
+
+    /** Smallest slice of Appointment.csv worth parsing on its own thread */
+    private static final int MIN_PARSE_CHUNK_BYTES = 1 << 20;
+
+    /**
+     * Keeps the maps loaded across logins and only reloads files that changed on disk.
+     * Disable with -Dhms.resident=false to reload everything on every login.
+     */
+    public static final boolean RESIDENT_MODE = !"false".equalsIgnoreCase(System.getProperty("hms.resident"));
+
+    /** Size and modification time of each data file when it was last loaded or saved */
+    private static final Map<String, FileStamp> fileStamps = new ConcurrentHashMap<>();
+
+    /** Which data sets are fully loaded into the maps */
+    private static volatile boolean staffLoaded, patientsLoaded, inventoryLoaded, appointmentsLoaded, requestsLoaded;
+
+    /** Data sets changed in memory since they were last loaded or saved */
+    private static final Set<DataSet> dirtySets = ConcurrentHashMap.newKeySet();
+
+    /** Bytes written to each data set's files since start-up */
+    private static final Map<DataSet, LongAdder> bytesWritten = new EnumMap<>(DataSet.class);
+
+    static {
+        for (DataSet set : DataSet.values()) {
+            bytesWritten.put(set, new LongAdder());
+        }
+    }
+
+    /** Patients and doctors whose appointments were hydrated on demand while not all appointments are loaded */
+    private static final Set<String> hydratedPatients = ConcurrentHashMap.newKeySet();
+    private static final Set<String> hydratedDoctors = ConcurrentHashMap.newKeySet();
+
+    /** Appointments in appointmentMap that were read from the archive and are unchanged since */
+    private static final Set<String> archivedAppointmentIDs = ConcurrentHashMap.newKeySet();
+    /** Whether all archived appointments are loaded, or else the patients whose archived appointments are */
+    private static volatile boolean historyLoaded;
+    private static final Set<String> historyPatients = ConcurrentHashMap.newKeySet();
+
+    /** Persistence behind the maps, selected with -Dhms.storage=csv|memory|binary */
+    private static final StorageEngine engine = createStorageEngine(System.getProperty("hms.storage", "csv"));
+
+    private static final UserRepository users = new MapRepositories.Users();
+    private static final AppointmentRepository appointments = new MapRepositories.Appointments();
+    private static final InventoryRepository inventory = new MapRepositories.Inventory();
+    private static final RequestRepository requests = new MapRepositories.Requests();
+
+    private static StorageEngine createStorageEngine(String name) {
+        switch (name.toLowerCase()) {
+            case "memory":
+                return new MemoryStorageEngine();
+            case "binary":
+                return new BinaryStorageEngine();
+            case "csv":
+                return new CsvStorageEngine();
+            default:
+                System.out.println("Unknown storage engine " + name + ", using csv");
+                return new CsvStorageEngine();
+        }
+    }
+
+    /**
+     * @return the storage engine selected at start-up
+     */
+    public static StorageEngine getStorageEngine() {
+        return engine;
+    }
+
+    /**
+     * @return the repository of patients and staff
+     */
+    public static UserRepository users() {
+        return users;
+    }
+
+    /**
+     * @return the repository of appointments
+     */
+    public static AppointmentRepository appointments() {
+        return appointments;
+    }
+
+    /**
+     * @return the repository of medicines
+     */
+    public static InventoryRepository inventory() {
+        return inventory;
+    }
+
+    /**
+     * @return the repository of replenishment requests
+     */
+    public static RequestRepository requests() {
+        return requests;
+    }
+
     // Public interface methods for loading data
     /**
-     * Loads all data from CSV files into the system.
+     * Loads all data from the storage engine into the system.
      * This includes staff, patient, inventory, and appointment data.
+     * Staff, patients and inventory are independent and load concurrently; appointments
+     * start once all three are available for linking, and requests once inventory is.
      */
     public static void loadAllData() {
-        loadStaffData();
-        loadPatientData();
-        loadInventoryData();
-        loadAppointmentData();
-        loadRequestsFromCSV();
+        loadData(true, true, true, true, true);
+    }
+
+    /**
+     * Loads whichever data sets are not fully loaded yet, as needed by the
+     * administrator and pharmacist menus.
+     */
+    public static void ensureAllDataLoaded() {
+        loadData(!staffLoaded, !patientsLoaded, !inventoryLoaded, !appointmentsLoaded, !requestsLoaded);
+    }
+
+    /**
+     * Loads inventory if it is not loaded yet, for menus that prescribe medicines.
+     */
+    public static void ensureInventoryLoaded() {
+        if (!inventoryLoaded) {
+            loadData(false, false, true, false, false);
+        }
+    }
+
+    /**
+     * Loads all appointments if they are not loaded yet, for searches across every doctor.
+     */
+    public static void ensureAppointmentsLoaded() {
+        if (!appointmentsLoaded) {
+            loadData(false, false, false, true, false);
+        }
+    }
+
+    /**
+     * Loads the selected data sets, concurrently where they are independent.
+     * Reloading staff, patients or inventory replaces objects that appointments and requests
+     * refer to, so those are reloaded too, or dropped if they were only partially hydrated.
+     */
+    private static void loadData(boolean staff, boolean patients, boolean inventory,
+                                 boolean appointments, boolean requests) {
+        boolean referencesReplaced = (staff && staffLoaded) || (patients && patientsLoaded)
+                || (inventory && inventoryLoaded);
+        if (referencesReplaced && !appointments) {
+            if (appointmentsLoaded) {
+                appointments = true;
+            } else {
+                unlinkAppointments(); // Hydrated again on demand
+            }
+        }
+        requests |= inventory && requestsLoaded;
+
+        CompletableFuture<Void> done = CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> staffTask = staff ? CompletableFuture.runAsync(Database::loadStaffData) : done;
+        CompletableFuture<Void> patientTask = patients ? CompletableFuture.runAsync(Database::loadPatientData) : done;
+        CompletableFuture<Void> inventoryTask = inventory ? CompletableFuture.runAsync(Database::loadInventoryData) : done;
+
+        CompletableFuture<Void> appointmentTask = appointments
+                ? CompletableFuture.allOf(staffTask, patientTask, inventoryTask).thenRunAsync(Database::loadAppointmentData)
+                : done;
+        CompletableFuture<Void> requestTask = requests
+                ? inventoryTask.thenRunAsync(Database::loadRequestData)
+                : done;
+
+        try {
+            CompletableFuture.allOf(staffTask, patientTask, inventoryTask, appointmentTask, requestTask).join();
+        } catch (CompletionException e) {
+            System.out.println("Error loading data: " + e.getCause().getMessage());
+        }
+        engine.checkpoint();
+    }
+
+    /**
+     * Rewrites the binary snapshot once all data sets are loaded and at least one of them
+     * was read from a CSV file that the snapshot does not mirror yet, so the next start
+     * can skip CSV parsing.
+     */
+    static void writeSnapshotIfStale() {
+        if (staffLoaded && patientsLoaded && inventoryLoaded && appointmentsLoaded && requestsLoaded
+                && DatabaseSnapshot.isStale(CSV_PATHS)) {
+            DatabaseSnapshot.write(CSV_PATHS);
+        }
+    }
+
+    /**
+     * Makes sure the data needed to log in, staff and patients, is loaded.
+     * In resident mode the maps stay loaded for the life of the process; the storage engine
+     * reports the data sets that changed on disk since they were last loaded or saved, and
+     * only those are reloaded, together with the data linked to them.
+     * Everything else is loaded after login by {@link hospitalsystem.HMS#loadRequiredData}.
+     */
+    public static void ensureDataLoaded() {
+        if (RESIDENT_MODE) {
+            boolean appointmentsChanged = engine.isStale(DataSet.APPOINTMENTS);
+            if (appointmentsChanged && !appointmentsLoaded) {
+                unlinkAppointments(); // Hydrated again on demand
+            }
+            loadData(staffLoaded && engine.isStale(DataSet.STAFF),
+                    patientsLoaded && engine.isStale(DataSet.PATIENTS),
+                    inventoryLoaded && engine.isStale(DataSet.INVENTORY),
+                    appointmentsLoaded && appointmentsChanged,
+                    requestsLoaded && engine.isStale(DataSet.REQUESTS));
+        }
+        loadData(!staffLoaded, !patientsLoaded, false, false, false);
+    }
+
+    /**
+     * Clears the maps and forgets that data has been loaded, so everything is loaded
+     * again when next needed.
+     */
+    public static void unloadAllData() {
+        patientsMap.clear();
+        doctorsMap.clear();
+        adminsMap.clear();
+        pharmsMap.clear();
+        inventoryMap.clear();
+        expiryIndex.clear();
+        appointmentMap.clear();
+        appointmentIndex.clear();
+        requestMap.clear();
+        ReplenishmentService.clear();
+        staffLoaded = false;
+        patientsLoaded = false;
+        inventoryLoaded = false;
+        appointmentsLoaded = false;
+        requestsLoaded = false;
+        hydratedPatients.clear();
+        hydratedDoctors.clear();
+        clearHistory();
+        fileStamps.clear();
+    }
+
+    /**
+     * @return true if inventoryMap holds the full inventory
+     */
+    public static boolean isInventoryLoaded() {
+        return inventoryLoaded;
     }
 
     /**
-     * Loads staff data from CSV into respective staff maps.
+     * Records that a data set was changed in memory, so the next save writes it.
+     * Called by the control classes after every mutation.
+     *
+     * @param set the changed data set
+     */
+    public static void markDirty(DataSet set) {
+        dirtySets.add(set);
+    }
+
+    /**
+     * @param set the data set
+     * @return true if the data set changed since it was last loaded or saved
+     */
+    public static boolean isDirty(DataSet set) {
+        return dirtySets.contains(set);
+    }
+
+    /**
+     * @param set the data set
+     * @return the number of bytes written to the data set's files since start-up
+     */
+    public static long getBytesWritten(DataSet set) {
+        return bytesWritten.get(set).sum();
+    }
+
+    /**
+     * Adds to the count of bytes written for a data set.
+     *
+     * @param set the data set
+     * @param bytes the number of bytes written
+     */
+    static void addBytesWritten(DataSet set, long bytes) {
+        bytesWritten.get(set).add(bytes);
+    }
+
+    /**
+     * Records a completed save of a data set's CSV file: remembers the file's stamp
+     * and counts the bytes written.
+     */
+    private static void recordSave(DataSet set) {
+        String filePath = CSV_PATHS.get(set);
+        recordFileStamp(filePath);
+        addBytesWritten(set, new File(filePath).length());
+    }
+
+    /**
+     * Remembers the current size and modification time of a data file,
+     * called whenever the file is loaded or written by this process.
+     *
+     * @param filePath path of the data file
+     */
+    static void recordFileStamp(String filePath) {
+        fileStamps.put(filePath, new FileStamp(new File(filePath)));
+    }
+
+    /**
+     * Checks whether a data set's CSV file changed on disk since it was last loaded or saved.
+     * For appointments, the appointment log is checked as well.
+     *
+     * @param set the data set
+     * @return true if the file's size or modification time differ from the recorded ones
+     */
+    static boolean isCSVStale(DataSet set) {
+        return isStale(CSV_PATHS.get(set))
+                || (set == DataSet.APPOINTMENTS && isStale(AppointmentLog.APPOINTMENT_LOG_PATH));
+    }
+
+    /**
+     * Checks whether a data file changed on disk since it was last loaded or saved.
+     *
+     * @param filePath path of the data file
+     * @return true if the file's size or modification time differ from the recorded ones
+     */
+    private static boolean isStale(String filePath) {
+        FileStamp recorded = fileStamps.get(filePath);
+        return recorded == null || !recorded.equals(new FileStamp(new File(filePath)));
+    }
+
+    /**
+     * Loads staff data into respective staff maps.
      * Populates doctorsMap, adminsMap, and pharmsMap.
      */
     public static void loadStaffData() {
-        loadStaffFromCSV(STAFF_CSV_PATH);
+        doctorsMap.clear();
+        adminsMap.clear();
+        pharmsMap.clear();
+        dirtySets.remove(DataSet.STAFF);
+        engine.load(DataSet.STAFF);
+        staffLoaded = true;
     }
 
     /**
-     * Loads patient data from CSV into patientsMap.
+     * Loads patient data into patientsMap.
      */
     public static void loadPatientData() {
-        loadPatientfromCSV(PATIENT_CSV_PATH);
+        patientsMap.clear();
+        dirtySets.remove(DataSet.PATIENTS);
+        engine.load(DataSet.PATIENTS);
+        patientsLoaded = true;
     }
 
     /**
-     * Loads inventory data from CSV into inventoryMap.
+     * Loads inventory data into inventoryMap.
      */
     public static void loadInventoryData() {
-        loadInventoryFromCSV(INVENTORY_CSV_PATH);
+        inventoryMap.clear();
+        dirtySets.remove(DataSet.INVENTORY);
+        engine.load(DataSet.INVENTORY);
+        expiryIndex.rebuild(inventoryMap.values());
+        ReplenishmentService.start(inventoryMap.values());
+        inventoryLoaded = true;
+        ExpirySweeper.start();
     }
 
     /**
-     * Loads appointment data from CSV into appointmentMap.
+     * Loads appointment data into appointmentMap.
+     * Any previously loaded appointments are unlinked from their doctors and patients first.
      */
     public static void loadAppointmentData() {
-        loadAppointmentsFromCSV(APPOINTMENT_CSV_PATH);
+        unlinkAppointments();
+        dirtySets.remove(DataSet.APPOINTMENTS);
+        engine.load(DataSet.APPOINTMENTS);
+        appointmentsLoaded = true;
+    }
+
+    /**
+     * Loads replenishment request data into requestMap.
+     */
+    public static void loadRequestData() {
+        requestMap.clear();
+        dirtySets.remove(DataSet.REQUESTS);
+        engine.load(DataSet.REQUESTS);
+        ReplenishmentService.indexRequests(requestMap.values());
+        requestsLoaded = true;
+    }
+
+    /**
+     * Loads a patient's appointments and appointment outcomes, unless they are already loaded.
+     * With the CSV engine only the patient's records are read from Appointment.csv, located
+     * through the offset index; other engines load all appointments.
+     *
+     * @param patientID the patient's ID
+     */
+    public static void loadAppointmentsForPatient(String patientID) {
+        if (!appointmentsLoaded && hydratedPatients.add(patientID) && !engine.loadAppointmentsFor(patientID, true)) {
+            loadAppointmentData();
+        }
+    }
+
+    /**
+     * Loads a doctor's schedule, unless it is already loaded.
+     * With the CSV engine only the doctor's records are read from Appointment.csv, located
+     * through the offset index; other engines load all appointments.
+     *
+     * @param doctorID the doctor's ID
+     */
+    public static void loadAppointmentsForDoctor(String doctorID) {
+        if (!appointmentsLoaded && hydratedDoctors.add(doctorID) && !engine.loadAppointmentsFor(doctorID, false)) {
+            loadAppointmentData();
+        }
+    }
+
+    /**
+     * Loads the archived appointments of closed months, for views that show appointment
+     * history across all patients. Only engines that archive closed months keep them out
+     * of appointmentMap; for the others this does nothing.
+     */
+    public static void loadAppointmentHistory() {
+        if (!historyLoaded) {
+            ensureAllDataLoaded();
+            engine.loadAppointmentHistory(null);
+            historyLoaded = true;
+        }
+    }
+
+    /**
+     * Loads a patient's archived appointments of closed months, for their medical record
+     * and appointment history. Their current appointments are hydrated first, as those
+     * take precedence over the archived copies.
+     *
+     * @param patientID the patient's ID
+     */
+    public static void loadAppointmentHistoryForPatient(String patientID) {
+        if (!historyLoaded && historyPatients.add(patientID)) {
+            loadAppointmentsForPatient(patientID);
+            engine.loadAppointmentHistory(patientID);
+        }
+    }
+
+    private static void clearHistory() {
+        archivedAppointmentIDs.clear();
+        historyPatients.clear();
+        historyLoaded = false;
+    }
+
+    /**
+     * @param appointmentID the appointment ID
+     * @return true if the appointment was loaded from the archive and is unchanged since
+     */
+    static boolean isArchived(String appointmentID) {
+        return archivedAppointmentIDs.contains(appointmentID);
+    }
+
+    /**
+     * Reads archived appointments from the sealed month segments into appointmentMap and
+     * links them. Appointments already in appointmentMap are skipped, as the copy there
+     * is either current or was loaded from the archive before.
+     *
+     * @param patientID only load this patient's appointments, or null for all
+     * @param archived true to leave the appointments in the archive, false to load them as
+     *                 current appointments, for engines that do not archive closed months
+     */
+    static void loadArchivedAppointments(String patientID, boolean archived) {
+        long startTime = System.nanoTime();
+        List<YearMonth> months = AppointmentArchive.getSealedMonths();
+        int loaded = 0;
+        for (YearMonth month : months) {
+            try {
+                for (Appointment appointment : AppointmentArchive.read(month).values()) {
+                    String appointmentID = appointment.getAppointmentID();
+                    Patient patient = appointment.getPatient();
+                    if ((patientID != null && (patient == null || !patient.getID().equals(patientID)))
+                            || appointmentMap.containsKey(appointmentID)) {
+                        continue;
+                    }
+                    if (archived) {
+                        archivedAppointmentIDs.add(appointmentID); // Before linking, so a concurrent save skips it
+                    }
+                    linkAppointment(appointment);
+                    loaded++;
+                }
+            } catch (IOException e) {
+                System.out.println("Error reading archived appointments of " + month + ": " + e.getMessage());
+            }
+        }
+        if (!months.isEmpty()) {
+            System.out.printf("Loaded %d archived appointments%s from %d sealed months in %d ms%n", loaded,
+                    patientID == null ? "" : " for " + patientID, months.size(), (System.nanoTime() - startTime) / 1_000_000);
+        }
+    }
+
+    /**
+     * Removes all appointments from appointmentMap and unlinks them from their doctors and patients.
+     */
+    private static void unlinkAppointments() {
+        appointmentsLoaded = false;
+        hydratedPatients.clear();
+        hydratedDoctors.clear();
+        clearHistory();
+        for (User user : doctorsMap.values()) {
+            ((Doctor) user).clearAppointments();
+        }
+        for (User user : patientsMap.values()) {
+            Patient patient = (Patient) user;
+            patient.setAppointments(new ArrayList<>());
+            patient.getMedicalRecord().setAppointmentOutcomes(new ArrayList<>());
+        }
+        appointmentMap.clear();
+        appointmentIndex.clear();
     }
 
     // Public interface methods for saving data
     /**
-     * Saves all system data to respective CSV files.
+     * Saves all changed system data through the storage engine.
      * Handles errors for each save operation independently.
      */
     public static void saveAllData() {
         System.out.println("Saving all data...");
         try {
-            saveAppointmentData();
-            savePatientData();
-            saveStaffData();
-            saveInventoryData();
-            saveRequestsToCSV();
-            System.out.println("All data saved successfully!");
+            long bytesBefore = totalBytesWritten();
+            GroupCommitter.flush();
+            List<DataSet> unchanged = new ArrayList<>();
+            // Only data sets that are fully loaded and changed since they were loaded or saved are written
+            for (DataSet set : DataSet.values()) {
+                if (!saveIfDirty(set)) {
+                    unchanged.add(set);
+                }
+            }
+            Lock persistOrder = DispensingService.inventorySaveLock();
+            persistOrder.lock();
+            try {
+                // A checkpoint may rewrite the inventory as well
+                engine.sync();
+                engine.checkpoint();
+            } finally {
+                persistOrder.unlock();
+            }
+            System.out.printf("All data saved successfully! %d bytes written, unchanged: %s%n",
+                    totalBytesWritten() - bytesBefore, unchanged);
         } catch (Exception e) {
             System.out.println("Error saving data: " + e.getMessage());
         }
     }
 
     /**
-     * Saves current appointment data to CSV file.
+     * Requests a save of a data set through a group commit, so that several requests
+     * arriving within a short window are written once.
+     *
+     * @param set the data set to save
+     */
+    public static void requestSave(DataSet set) {
+        markDirty(set);
+        GroupCommitter.requestSave(set);
+    }
+
+    /**
+     * Saves a data set if it is fully loaded and changed since it was last loaded or saved.
+     *
+     * @param set the data set to save
+     * @return true if the data set was written
+     */
+    static boolean saveIfDirty(DataSet set) {
+        if (!isLoaded(set) || !dirtySets.contains(set)) {
+            return false;
+        }
+        dirtySets.remove(set);
+        try {
+            switch (set) {
+                case STAFF -> saveStaffData();
+                case PATIENTS -> savePatientData();
+                case INVENTORY -> saveInventoryData();
+                case APPOINTMENTS -> saveAppointmentData();
+                case REQUESTS -> engine.save(DataSet.REQUESTS);
+            }
+        } catch (RuntimeException e) {
+            markDirty(set);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * @param set the data set
+     * @return true if the data set is fully loaded
+     */
+    static boolean isLoaded(DataSet set) {
+        return switch (set) {
+            case STAFF -> staffLoaded;
+            case PATIENTS -> patientsLoaded;
+            case INVENTORY -> inventoryLoaded;
+            case APPOINTMENTS -> appointmentsLoaded;
+            case REQUESTS -> requestsLoaded;
+        };
+    }
+
+    /**
+     * @return the number of bytes written to all data files since start-up
+     */
+    private static long totalBytesWritten() {
+        long total = 0;
+        for (DataSet set : DataSet.values()) {
+            total += getBytesWritten(set);
+        }
+        return total;
+    }
+
+    /**
+     * Saves current appointment data.
      * @throws RuntimeException if there is an error saving the data
      */
     public static void saveAppointmentData() {
         try {
-            saveAppointmentsToCSV();
+            engine.save(DataSet.APPOINTMENTS);
             System.out.println("Appointments saved successfully.");
         } catch (Exception e) {
             System.out.println("Error saving appointments: " + e.getMessage());
@@ -138,12 +697,12 @@ public class Database {
     }
 
     /**
-     * Saves current patient data to CSV file.
+     * Saves current patient data.
      * @throws RuntimeException if there is an error saving the data
      */
     public static void savePatientData() {
         try {
-            savePatientToCSV();
+            engine.save(DataSet.PATIENTS);
             System.out.println("Patient data saved successfully.");
         } catch (Exception e) {
             System.out.println("Error saving patient data: " + e.getMessage());
@@ -152,12 +711,12 @@ public class Database {
     }
 
     /**
-     * Saves current staff data to CSV file.
+     * Saves current staff data.
      * @throws RuntimeException if there is an error saving the data
      */
     public static void saveStaffData() {
         try {
-            saveStaffToCSV();
+            engine.save(DataSet.STAFF);
             System.out.println("Staff data saved successfully.");
         } catch (Exception e) {
             System.out.println("Error saving staff data: " + e.getMessage());
@@ -166,16 +725,22 @@ public class Database {
     }
 
     /**
-     * Saves current inventory data to CSV file.
+     * Saves current inventory data.
      * @throws RuntimeException if there is an error saving the data
      */
     public static void saveInventoryData() {
+        Lock persistOrder = DispensingService.inventorySaveLock();
+        persistOrder.lock();
         try {
-            saveInventoryToCSV();
+            // Dispensed prescriptions reach disk before the stock taken for them
+            engine.sync();
+            engine.save(DataSet.INVENTORY);
             System.out.println("Inventory data saved successfully.");
         } catch (Exception e) {
             System.out.println("Error saving inventory data: " + e.getMessage());
             throw e;
+        } finally {
+            persistOrder.unlock();
         }
     }
 
@@ -184,9 +749,13 @@ public class Database {
      * Loads patient data from specified CSV file into patientsMap.
      * Handles data validation and error logging.
      *
-     * @param filePath path to the patient CSV file
      */
-    private static void loadPatientfromCSV(String filePath) {
+    static void loadPatientsFromCSV() {
+        String filePath = PATIENT_CSV_PATH;
+        recordFileStamp(filePath);
+        if (DatabaseSnapshot.readPatients(filePath)) {
+            return;
+        }
         try (Scanner scanner = new Scanner(new File(filePath))) {
             scanner.nextLine(); // Skip header
             while (scanner.hasNextLine()) {
@@ -215,9 +784,13 @@ public class Database {
      * Loads staff data from specified CSV file into respective staff maps.
      * Categorizes staff by role and handles data validation.
      *
-     * @param filePath path to the staff CSV file
      */
-    private static void loadStaffFromCSV(String filePath) {
+    static void loadStaffFromCSV() {
+        String filePath = STAFF_CSV_PATH;
+        recordFileStamp(filePath);
+        if (DatabaseSnapshot.readStaff(filePath)) {
+            return;
+        }
         try (Scanner scanner = new Scanner(new File(filePath))) {
             scanner.nextLine(); // Skip the header
             while (scanner.hasNextLine()) {
@@ -262,17 +835,22 @@ public class Database {
      * Loads inventory data from specified CSV file into inventoryMap.
      * Handles batch information and stock levels.
      *
-     * @param filePath path to the inventory CSV file
      */
-    private static void loadInventoryFromCSV(String filePath) {
+    static void loadInventoryFromCSV() {
+        String filePath = INVENTORY_CSV_PATH;
+        recordFileStamp(filePath);
+        if (DatabaseSnapshot.readInventory(filePath)) {
+            return;
+        }
         try (Scanner scanner = new Scanner(new File(filePath))) {
             scanner.nextLine(); // Skip header
             while (scanner.hasNextLine()) {
-                String[] data = scanner.nextLine().split(",");
+                String[] data = scanner.nextLine().split(",", -1);
                 String medicineName = data[0].trim();
                 int initialStock = Integer.parseInt(data[1].trim());
                 int minStockLevel = Integer.parseInt(data[2].trim());
-                String[] quantities = data[3].trim().split("\\|");
+                // A medicine whose stock has all been used up or retired has no batches
+                String[] quantities = data[3].isBlank() ? new String[0] : data[3].trim().split("\\|");
                 String[] dates = data[4].trim().split("\\|");
 
                 Medicine medicine = new Medicine(medicineName, minStockLevel, "");
@@ -296,8 +874,11 @@ public class Database {
     /**
      * Loads replenishment request data from CSV into requestMap.
      */
-    public static void loadRequestsFromCSV() {
-        requestMap.clear(); // Clear existing requests first
+    static void loadRequestsFromCSV() {
+        recordFileStamp(REQUEST_CSV_PATH);
+        if (DatabaseSnapshot.readRequests(REQUEST_CSV_PATH)) {
+            return;
+        }
 
         try (Scanner scanner = new Scanner(new File(REQUEST_CSV_PATH))) {
             // Debug print
@@ -356,150 +937,222 @@ public class Database {
 
     /**
      * Loads appointment data from specified CSV file into appointmentMap.
-     * Links appointments with doctors and patients, handles prescriptions.
-     *
-     * @param filePath path to the appointment CSV file
-     */
-    private static void loadAppointmentsFromCSV(String filePath) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String header = reader.readLine(); // Skip header
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                // Combine any split lines that might exist
-                StringBuilder fullLine = new StringBuilder(line);
-                while (line.endsWith("\"") && !line.endsWith("\"\"")) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        fullLine.append("\n").append(line);
-                    }
+     * Reads the binary snapshot if it still mirrors the file, otherwise maps the
+     * file into memory and parses it in a single pass. Then replays the
+     * appointment log on top of it, then links appointments with doctors and patients.
+     * Appointments of sealed months stay in the archive until a history view needs them.
+     */
+    static void loadAppointmentsFromCSV() {
+        String filePath = APPOINTMENT_CSV_PATH;
+        Map<String, Appointment> loaded = new LinkedHashMap<>();
+        recordFileStamp(filePath);
+        recordFileStamp(AppointmentLog.APPOINTMENT_LOG_PATH);
+        AppointmentArchive.refresh();
+        try {
+            long startTime = System.nanoTime();
+            if (DatabaseSnapshot.readAppointments(filePath, loaded)) {
+                System.out.printf("Read %d appointment records from snapshot in %d ms%n",
+                        loaded.size(), (System.nanoTime() - startTime) / 1_000_000);
+            } else {
+                ByteBuffer buffer = AppointmentCSVParser.map(filePath);
+                AppointmentCSVParser header = new AppointmentCSVParser(buffer);
+                header.skipLine(); // Skip header
+
+                // Parse chunks of the file in parallel, then merge them in file order
+                int chunkCount = (int) Math.max(1, Math.min(
+                        Runtime.getRuntime().availableProcessors() * 2L,
+                        (buffer.limit() - header.position()) / MIN_PARSE_CHUNK_BYTES));
+                int[] bounds = AppointmentCSVParser.splitRecords(buffer, header.position(), buffer.limit(), chunkCount);
+                List<CompletableFuture<Map<String, Appointment>>> chunks = new ArrayList<>();
+                for (int i = 0; i + 1 < bounds.length; i++) {
+                    AppointmentCSVParser parser = new AppointmentCSVParser(buffer, bounds[i], bounds[i + 1]);
+                    chunks.add(CompletableFuture.supplyAsync(() -> {
+                        Map<String, Appointment> chunk = new LinkedHashMap<>();
+                        parseAppointments(parser, chunk);
+                        return chunk;
+                    }));
                 }
+                for (CompletableFuture<Map<String, Appointment>> chunk : chunks) {
+                    loaded.putAll(chunk.join());
+                }
+                int rows = loaded.size();
+                long elapsedNanos = Math.max(System.nanoTime() - startTime, 1);
+                System.out.printf("Parsed %d appointment records in %d ms (%.0f rows/s)%n",
+                        rows, elapsedNanos / 1_000_000, rows * 1e9 / elapsedNanos);
+            }
 
-                line = fullLine.toString();
-                System.out.println("Raw line: " + line);  // Debug
-
-                try {
-                    // Split the line, preserving quoted values
-                    List<String> fields = new ArrayList<>();
-                    StringBuilder field = new StringBuilder();
-                    boolean inQuotes = false;
-
-                    for (int i = 0; i < line.length(); i++) {
-                        char c = line.charAt(i);
-                        if (c == '"') {
-                            inQuotes = !inQuotes;
-                        } else if (c == ',' && !inQuotes) {
-                            fields.add(field.toString().trim());
-                            field = new StringBuilder();
-                        } else {
-                            field.append(c);
-                        }
-                    }
-                    fields.add(field.toString().trim());
-
-                    // Remove quotes from fields
-                    fields = fields.stream()
-                            .map(f -> f.replaceAll("^\"|\"$", ""))
-                            .collect(Collectors.toList());
-
-                    System.out.println("Parsed fields: " + fields);  // Debug
+            // Replay logged mutations on top of the snapshot, latest record wins
+            AppointmentCSVParser logParser = new AppointmentCSVParser(AppointmentCSVParser.map(AppointmentLog.APPOINTMENT_LOG_PATH));
+            int replayed = parseAppointments(logParser, loaded);
+            AppointmentLog.setPendingRecords(replayed);
+            if (replayed > 0) {
+                markDirty(DataSet.APPOINTMENTS); // Fold the log into the CSV on the next save
+                System.out.println("Replayed " + replayed + " logged appointment changes");
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading appointments file: " + e.getMessage());
+        }
 
-                    if (fields.size() < 10) {
-                        System.out.println("Skipping invalid appointment data: insufficient fields");
-                        continue;
-                    }
+        boolean unsealed = false;
+        for (Appointment appointment : loaded.values()) {
+            linkAppointment(appointment);
+            YearMonth month = AppointmentArchive.monthOf(appointment);
+            unsealed |= AppointmentArchive.isClosed(month) && !AppointmentArchive.isSealed(month);
+        }
+        if (unsealed) {
+            markDirty(DataSet.APPOINTMENTS); // Seal closed months on the next save
+        }
+        System.out.println("Successfully loaded " + appointmentMap.size() + " appointments");
+    }
 
-                    // Create appointment
-                    String appointmentID = fields.get(0);
-                    String patientID = fields.get(1);
-                    String doctorID = fields.get(2);
+    /**
+     * Parses every remaining record of the parser into the given map, keyed by appointment ID.
+     *
+     * @param parser the parser positioned at the first record
+     * @param target the map receiving parsed appointments
+     * @return the number of records parsed successfully
+     */
+    private static int parseAppointments(AppointmentCSVParser parser, Map<String, Appointment> target) {
+        int rows = 0;
+        while (parser.hasNext()) {
+            Appointment appointment = parser.next();
+            if (appointment != null) {
+                target.put(appointment.getAppointmentID(), appointment);
+                rows++;
+            }
+        }
+        return rows;
+    }
 
-                    User doctorUser = doctorsMap.get(doctorID);
-                    User patientUser = patientsMap.get(patientID);
+    /**
+     * Adds a parsed appointment to appointmentMap and links it with its doctor
+     * and patient, including the patient's medical record for completed appointments.
+     *
+     * @param appointment the appointment to link
+     */
+    static void linkAppointment(Appointment appointment) {
+        Patient patient = appointment.getPatient();
+        if (appointment.getStatus() == AppointmentStatus.COMPLETED && patient != null) {
+            patient.getMedicalRecord().getAppointmentOutcomes().add(appointment.getAppointmentOutcome());
+        }
 
-                    if (!(doctorUser instanceof Doctor)) {
-                        System.out.println("Invalid doctor for appointment: " + appointmentID);
-                        continue;
-                    }
+        appointmentMap.put(appointment.getAppointmentID(), appointment);
+        appointmentIndex.put(appointment);
+        appointment.getDoctor().addAppointment(appointment);
 
-                    Doctor doctor = (Doctor) doctorUser;
-                    Patient patient = (patientUser instanceof Patient) ? (Patient) patientUser : null;
-
-                    int year = Integer.parseInt(fields.get(3));
-                    int month = Integer.parseInt(fields.get(4));
-                    int day = Integer.parseInt(fields.get(5));
-                    int hour = Integer.parseInt(fields.get(6));
-                    int minute = Integer.parseInt(fields.get(7));
-
-                    AppointmentSlot slot = new AppointmentSlot(year, month, day, hour, minute);
-                    Appointment appointment = new Appointment(appointmentID, patient, doctor, slot);
-
-                    appointment.setStatus(AppointmentStatus.valueOf(fields.get(8).toUpperCase()));
-                    appointment.setIsAvailable(Boolean.parseBoolean(fields.get(9)));
-
-                    // Handle consultation notes
-                    String consultationNotes = fields.size() > 10 ? fields.get(10) : "";
-                    appointment.setConsultationNotes(consultationNotes);
-                    System.out.println("Set consultation notes: " + consultationNotes);
-
-                    // Handle prescriptions
-                    if (fields.size() > 11 && !fields.get(11).isEmpty()) {
-                        String prescriptionData = fields.get(11);
-                        System.out.println("Processing prescription data: " + prescriptionData);
-
-                        String[] prescriptionParts = prescriptionData.split(":");
-                        if (prescriptionParts.length == 2) {
-                            String medicineName = prescriptionParts[0].trim();
-                            int quantity = Integer.parseInt(prescriptionParts[1].trim());
-
-                            Medicine medicine = inventoryMap.get(medicineName);
-                            if (medicine != null) {
-                                List<Medicine.MedicineSet> medicineSets = new ArrayList<>();
-                                medicineSets.add(new Medicine.MedicineSet(medicine, quantity));
-
-                                Prescription prescription = new Prescription(
-                                        medicineSets,
-                                        doctor.getID(),
-                                        patient.getID(),
-                                        PrescriptionStatus.PENDING
-                                );
-
-                                appointment.setPrescription(prescription);
-                                System.out.println("Created prescription: " + prescription);
-                            } else {
-                                System.out.println("WARNING: Medicine not found in inventory: " + medicineName);
-                                System.out.println("Available medicines: " + String.join(", ", inventoryMap.keySet()));
-                            }
-                        }
-                    }
+        if (patient != null) {
+            List<Appointment> patientAppointments = patient.getAppointments();
+            if (patientAppointments == null) {
+                patientAppointments = new ArrayList<>();
+            }
+            patientAppointments.add(appointment);
+            patient.setAppointments(patientAppointments);
+        }
+    }
 
-                    if (appointment.getStatus() == AppointmentStatus.COMPLETED && patient != null) {
-                        patient.getMedicalRecord().getAppointmentOutcomes().add(appointment.getAppointmentOutcome());
-                    }
+    /**
+     * Hydrates the appointments of one patient or doctor. Their records in Appointment.csv
+     * are located through the offset index and parsed individually; the appointment log,
+     * which the index does not cover, is then replayed for those appointments and any
+     * logged appointment that now belongs to the user. Appointments already in
+     * appointmentMap are kept, as they are up to date in memory.
+     *
+     * @param userID the patient or doctor ID
+     * @param isPatient true to hydrate by patient, false by doctor
+     */
+    static void hydrateAppointments(String userID, boolean isPatient) {
+        long startTime = System.nanoTime();
+        Map<String, Appointment> loaded = new LinkedHashMap<>();
+        recordFileStamp(APPOINTMENT_CSV_PATH);
+        recordFileStamp(AppointmentLog.APPOINTMENT_LOG_PATH);
+        try {
+            AppointmentOffsetIndex index = AppointmentOffsetIndex.open(APPOINTMENT_CSV_PATH);
+            int[] offsets = isPatient ? index.patientOffsets(userID) : index.doctorOffsets(userID);
+            AppointmentCSVParser parser = new AppointmentCSVParser(AppointmentCSVParser.map(APPOINTMENT_CSV_PATH));
+            for (int offset : offsets) {
+                parser.seek(offset);
+                Appointment appointment = parser.next();
+                if (appointment != null && !appointmentMap.containsKey(appointment.getAppointmentID())) {
+                    loaded.put(appointment.getAppointmentID(), appointment);
+                }
+            }
 
-                    appointmentMap.put(appointmentID, appointment);
-                    doctor.addAppointment(appointment);
+            Map<String, Appointment> logged = new LinkedHashMap<>();
+            parseAppointments(new AppointmentCSVParser(AppointmentCSVParser.map(AppointmentLog.APPOINTMENT_LOG_PATH)), logged);
+            for (Appointment appointment : logged.values()) {
+                String appointmentID = appointment.getAppointmentID();
+                User owner = isPatient ? appointment.getPatient() : appointment.getDoctor();
+                if (!appointmentMap.containsKey(appointmentID)
+                        && (loaded.containsKey(appointmentID) || (owner != null && owner.getID().equals(userID)))) {
+                    loaded.put(appointmentID, appointment);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading appointments for " + userID + ": " + e.getMessage());
+        }
 
-                    if (patient != null) {
-                        List<Appointment> patientAppointments = patient.getAppointments();
-                        if (patientAppointments == null) {
-                            patientAppointments = new ArrayList<>();
-                        }
-                        patientAppointments.add(appointment);
-                        patient.setAppointments(patientAppointments);
-                    }
+        for (Appointment appointment : loaded.values()) {
+            linkAppointment(appointment);
+        }
+        System.out.printf("Loaded %d appointments for %s in %d ms%n",
+                loaded.size(), userID, (System.nanoTime() - startTime) / 1_000_000);
+    }
 
-                } catch (Exception e) {
-                    System.out.println("Error processing appointment line: " + line);
-                    System.out.println("Error details: " + e.getMessage());
-                    e.printStackTrace();
+    /**
+     * Finds the highest number used in an APT appointment ID, including archived appointments
+     * and appointments that are not loaded when only some users' appointments have been hydrated.
+     *
+     * @return the highest appointment number, or 0 if there are none
+     */
+    public static int getHighestAppointmentNumber() {
+        int highest = appointmentMap.keySet().stream()
+                .mapToInt(AppointmentOffsetIndex::appointmentNumber)
+                .max()
+                .orElse(0);
+        highest = Math.max(highest, AppointmentArchive.getHighestAppointmentNumber());
+        if (appointmentsLoaded) {
+            return highest;
+        }
+        try {
+            highest = Math.max(highest, AppointmentOffsetIndex.open(APPOINTMENT_CSV_PATH).getHighestAppointmentNumber());
+            AppointmentCSVParser log = new AppointmentCSVParser(AppointmentCSVParser.map(AppointmentLog.APPOINTMENT_LOG_PATH));
+            while (log.hasNext()) {
+                if (log.nextRecord()) {
+                    highest = Math.max(highest, AppointmentOffsetIndex.appointmentNumber(log.field(0)));
                 }
             }
-            System.out.println("Successfully loaded " + appointmentMap.size() + " appointments");
-
         } catch (IOException e) {
-            System.out.println("Error reading appointments file: " + e.getMessage());
-            e.printStackTrace();
+            System.out.println("Error reading appointment IDs: " + e.getMessage());
+        }
+        return highest;
+    }
+
+    /**
+     * Persists changes to appointments through the storage engine in one write, which with
+     * the CSV engine appends them to the appointment log instead of rewriting Appointment.csv;
+     * the log is compacted back into the CSV in the background and on logout.
+     *
+     * @param appointments the appointments that were created or modified
+     */
+    static void recordAppointmentChanges(List<Appointment> appointments) {
+        for (Appointment appointment : appointments) {
+            archivedAppointmentIDs.remove(appointment.getAppointmentID()); // Now current, superseding the archived copy
+        }
+        markDirty(DataSet.APPOINTMENTS);
+        engine.appointmentsChanged(appointments);
+    }
+
+    /**
+     * Compacts the appointment log by writing the current appointments to
+     * Appointment.csv and then discarding the logged records.
+     */
+    public static void compactAppointmentLog() {
+        if (!appointmentsLoaded) {
+            return; // Never overwrite the CSV with a partially loaded or cleared map
+        }
+        synchronized (AppointmentLog.LOCK) {
+            saveAppointmentsToCSV();
+            AppointmentLog.truncate();
         }
     }
 
@@ -527,7 +1180,7 @@ public class Database {
      * @param value the string to escape
      * @return escaped string safe for CSV storage
      */
-    private static String escapeCSV(String value) {
+    static String escapeCSV(String value) {
         if (value == null) {
             return "";
         }
@@ -547,7 +1200,7 @@ public class Database {
      * @param appointment the Appointment object to format
      * @return formatted string representation of the appointment
      */
-    private static String formatAppointmentToCSV(Appointment appointment) {
+    static String formatAppointmentToCSV(Appointment appointment) {
         StringBuilder sb = new StringBuilder();
 
         AppointmentSlot slot = appointment.getSlot();
@@ -566,7 +1219,8 @@ public class Database {
         sb.append(appointment.getStatus()).append(",");
         sb.append(appointment.getIsAvailable()).append(",");
         sb.append(escapeCSV(appointment.getConsultationNotes())).append(",");
-        sb.append(escapeCSV(prescriptions));
+        sb.append(escapeCSV(prescriptions)).append(",");
+        sb.append(prescriptions.isEmpty() ? "" : appointment.getPrescription().getStatus().toString());
 
         return sb.toString();
     }
@@ -575,51 +1229,52 @@ public class Database {
      * Saves current patient data to CSV file.
      * Sorts patients by ID and writes data in specified format.
      */
-    public static void savePatientToCSV() {
-        try (FileWriter fw = new FileWriter(PATIENT_CSV_PATH);
-             BufferedWriter bw = new BufferedWriter(fw)) {
+    public static synchronized void savePatientToCSV() {
+        dirtySets.remove(DataSet.PATIENTS);
+        try (AtomicFileWriter bw = AtomicFileWriter.open(PATIENT_CSV_PATH)) {
 
             // Write header
             bw.write(PATIENT_CSV_HEADER);
             bw.newLine();
 
             // Write patients sorted by ID for consistency
-            patientsMap.values().stream()
+            List<Patient> patients = patientsMap.values().stream()
                     .map(user -> (Patient) user)
                     .sorted(Comparator.comparing(User::getID))
-                    .forEach(patient -> {
-                        try {
-                            String line = String.format("%s,%s,%s,%s,%s,%s,%s,%s",
-                                    escapeCSV(patient.getID()),
-                                    escapeCSV(patient.getName()),
-                                    patient.getDOB().toString(),
-                                    escapeCSV(patient.getGender()),
-                                    patient.getBloodType().name(),
-                                    escapeCSV(patient.getPhoneNumber()),
-                                    escapeCSV(patient.getEmail()),
-                                    escapeCSV(patient.getPassword())
-                            );
-                            bw.write(line);
-                            bw.newLine();
-                        } catch (IOException e) {
-                            System.out.println("Error writing patient " + patient.getID() + ": " + e.getMessage());
-                        }
-                    });
-
-            System.out.println("Successfully saved " + patientsMap.size() + " patients to " + PATIENT_CSV_PATH);
+                    .toList();
+            for (Patient patient : patients) {
+                String line = String.format("%s,%s,%s,%s,%s,%s,%s,%s",
+                        escapeCSV(patient.getID()),
+                        escapeCSV(patient.getName()),
+                        patient.getDOB().toString(),
+                        escapeCSV(patient.getGender()),
+                        patient.getBloodType().name(),
+                        escapeCSV(patient.getPhoneNumber()),
+                        escapeCSV(patient.getEmail()),
+                        escapeCSV(patient.getPassword())
+                );
+                bw.write(line);
+                bw.newLine();
+            }
+            bw.commit();
+
+            System.out.println("Successfully saved " + patients.size() + " patients to " + PATIENT_CSV_PATH);
 
         } catch (IOException e) {
+            markDirty(DataSet.PATIENTS);
             System.out.println("Error saving patients to CSV: " + e.getMessage());
+            throw new RuntimeException("Failed to save patient data", e);
         }
+        recordSave(DataSet.PATIENTS);
     }
 
     /**
      * Saves current staff data to CSV file.
      * Combines all staff types and sorts by ID before saving.
      */
-    public static void saveStaffToCSV() {
-        try (FileWriter fw = new FileWriter(STAFF_CSV_PATH);
-             BufferedWriter bw = new BufferedWriter(fw)) {
+    public static synchronized void saveStaffToCSV() {
+        dirtySets.remove(DataSet.STAFF);
+        try (AtomicFileWriter bw = AtomicFileWriter.open(STAFF_CSV_PATH)) {
 
             // Write header
             bw.write(STAFF_CSV_HEADER);
@@ -651,13 +1306,16 @@ public class Database {
                 bw.write(line);
                 bw.newLine();
             }
+            bw.commit();
 
             System.out.println("Successfully saved " + allStaff.size() + " staff members to " + STAFF_CSV_PATH);
 
         } catch (IOException e) {
+            markDirty(DataSet.STAFF);
             System.out.println("Error saving staff to CSV: " + e.getMessage());
             throw new RuntimeException("Failed to save staff data", e);
         }
+        recordSave(DataSet.STAFF);
     }
 
 
@@ -665,124 +1323,151 @@ public class Database {
      * Saves current inventory data to CSV file.
      * Includes stock levels and batch information.
      */
-    public static void saveInventoryToCSV() {
-        try (FileWriter fw = new FileWriter(INVENTORY_CSV_PATH);
-             BufferedWriter bw = new BufferedWriter(fw)) {
+    public static synchronized void saveInventoryToCSV() {
+        dirtySets.remove(DataSet.INVENTORY);
+        try (AtomicFileWriter bw = AtomicFileWriter.open(INVENTORY_CSV_PATH)) {
 
             // Write header
             bw.write(INVENTORY_CSV_HEADER);
             bw.newLine();
 
             // Sort medicines by name and write data
-            inventoryMap.values().stream()
+            List<Medicine> medicines = inventoryMap.values().stream()
                     .sorted(Comparator.comparing(Medicine::getMedicineName))
-                    .forEach(medicine -> {
-                        try {
-                            // Format batch quantities and dates
-                            List<Medicine.Batch> batches = medicine.getBatches();
-
-                            // Handle quantities
-                            String batchesQuantity = batches.stream()
-                                    .map(batch -> String.valueOf(batch.getQuantity()))
-                                    .collect(Collectors.joining("|"));
-
-                            // Handle expiry dates
-                            String batchesDates = batches.stream()
-                                    .map(batch -> batch.getExpirationDate().toString())
-                                    .collect(Collectors.joining("|"));
-
-                            // Format the complete line
-                            String line = String.format("%s,%d,%d,%s,%s",
-                                    escapeCSV(medicine.getMedicineName()),
-                                    medicine.getTotalQuantity(),       // Initial stock is total quantity
-                                    medicine.getMinStockLevel(),      // Low stock alert level
-                                    batchesQuantity,                  // Batch quantities joined by |
-                                    batchesDates                      // Batch dates joined by |
-                            );
-
-                            // Write the line
-                            bw.write(line);
-                            bw.newLine();
-
-                        } catch (IOException e) {
-                            System.out.println("Error writing medicine " + medicine.getMedicineName() + ": " + e.getMessage());
-                        }
-                    });
-
-            System.out.println("Successfully saved " + inventoryMap.size() + " medicines to " + INVENTORY_CSV_PATH);
+                    .toList();
+            for (Medicine medicine : medicines) {
+                // Format batch quantities and dates
+                List<Medicine.Batch> batches = medicine.getBatchesUnordered();
+
+                // Handle quantities
+                String batchesQuantity = batches.stream()
+                        .map(batch -> String.valueOf(batch.getQuantity()))
+                        .collect(Collectors.joining("|"));
+
+                // Handle expiry dates
+                String batchesDates = batches.stream()
+                        .map(batch -> batch.getExpirationDate().toString())
+                        .collect(Collectors.joining("|"));
+
+                // Format the complete line
+                String line = String.format("%s,%d,%d,%s,%s",
+                        escapeCSV(medicine.getMedicineName()),
+                        medicine.getTotalQuantity(),       // Initial stock is total quantity
+                        medicine.getMinStockLevel(),      // Low stock alert level
+                        batchesQuantity,                  // Batch quantities joined by |
+                        batchesDates                      // Batch dates joined by |
+                );
+
+                // Write the line
+                bw.write(line);
+                bw.newLine();
+            }
+            bw.commit();
+
+            System.out.println("Successfully saved " + medicines.size() + " medicines to " + INVENTORY_CSV_PATH);
 
         } catch (IOException e) {
+            markDirty(DataSet.INVENTORY);
             System.out.println("Error saving inventory to CSV: " + e.getMessage());
             throw new RuntimeException("Failed to save inventory data", e);
         }
+        recordSave(DataSet.INVENTORY);
     }
 
     /**
      * Saves current appointment data to CSV file.
      * Includes all appointment details and related prescriptions.
+     * Appointments of closed months that have not been sealed yet are sealed into the
+     * archive first and left out of the CSV, as are unchanged archived appointments.
      */
-    public static void saveAppointmentsToCSV() {
-        try (FileWriter fw = new FileWriter(APPOINTMENT_CSV_PATH);
-            BufferedWriter bw = new BufferedWriter(fw)) {
+    public static synchronized void saveAppointmentsToCSV() {
+        dirtySets.remove(DataSet.APPOINTMENTS);
+        try {
+            // Sort appointments by ID for consistency, then split off closed months to seal
+            List<Appointment> appointments = new ArrayList<>(appointmentMap.values());
+            appointments.removeIf(appointment -> archivedAppointmentIDs.contains(appointment.getAppointmentID()));
+            appointments.sort(Comparator.comparing(Appointment::getAppointmentID));
+            Map<YearMonth, List<Appointment>> closedMonths = new TreeMap<>();
+            List<Appointment> current = new ArrayList<>();
+            for (Appointment appointment : appointments) {
+                YearMonth month = AppointmentArchive.monthOf(appointment);
+                if (AppointmentArchive.isClosed(month) && !AppointmentArchive.isSealed(month)) {
+                    closedMonths.computeIfAbsent(month, m -> new ArrayList<>()).add(appointment);
+                } else {
+                    current.add(appointment);
+                }
+            }
 
-            // Write header
-            bw.write(APPOINTMENT_CSV_HEADER);
-            bw.newLine();
+            // Seal before rewriting the CSV, so a crash in between leaves both copies rather than neither
+            AppointmentArchive.seal(closedMonths);
+            for (List<Appointment> sealed : closedMonths.values()) {
+                for (Appointment appointment : sealed) {
+                    archivedAppointmentIDs.add(appointment.getAppointmentID());
+                }
+            }
 
-            // Write appointments sorted by ID for consistency
-            Database.appointmentMap.values().stream()
-                    .sorted(Comparator.comparing(Appointment::getAppointmentID))
-                    .forEach(appointment -> {
-                        try {
-                            bw.write(formatAppointmentToCSV(appointment));
-                            bw.newLine();
-                        } catch (IOException e) {
-                            System.out.println("Error writing appointment " + appointment.getAppointmentID() + ": " + e.getMessage());
-                        }
-                    });
+            try (AtomicFileWriter bw = AtomicFileWriter.open(APPOINTMENT_CSV_PATH)) {
+                // Write header
+                bw.write(APPOINTMENT_CSV_HEADER);
+                bw.newLine();
+
+                for (Appointment appointment : current) {
+                    bw.write(formatAppointmentToCSV(appointment));
+                    bw.newLine();
+                }
+                bw.commit();
+            }
 
-            System.out.println("Successfully saved " + Database.appointmentMap.size() + " appointments to " + APPOINTMENT_CSV_PATH);
+            System.out.println("Successfully saved " + current.size() + " appointments to " + APPOINTMENT_CSV_PATH);
 
         } catch (IOException e) {
+            markDirty(DataSet.APPOINTMENTS);
             System.out.println("Error saving appointments to CSV: " + e.getMessage());
+            throw new RuntimeException("Failed to save appointment data", e);
+        }
+        recordSave(DataSet.APPOINTMENTS);
+        try {
+            AppointmentOffsetIndex.rebuild(APPOINTMENT_CSV_PATH);
+        } catch (IOException e) {
+            System.out.println("Error rebuilding appointment index: " + e.getMessage());
         }
     }
 
     /**
      * Saves replenishment request data to CSV file.
      */
-    public static void saveRequestsToCSV() {
-        try (FileWriter fw = new FileWriter(REQUEST_CSV_PATH);
-             BufferedWriter bw = new BufferedWriter(fw)) {
+    public static synchronized void saveRequestsToCSV() {
+        dirtySets.remove(DataSet.REQUESTS);
+        try (AtomicFileWriter bw = AtomicFileWriter.open(REQUEST_CSV_PATH)) {
 
             // Write header
             bw.write(REQUEST_CSV_HEADER);
             bw.newLine();
 
             // Write requests sorted by ID
-            requestMap.values().stream()
+            List<ReplenishmentRequest> requests = requestMap.values().stream()
                     .sorted(Comparator.comparingInt(ReplenishmentRequest::getRequestID))
-                    .forEach(request -> {
-                        try {
-                            String line = String.format("%d,%s,%d,%s",
-                                    request.getRequestID(),
-                                    escapeCSV(request.getMedicine().getMedicineName()),
-                                    request.getRequestedQuantity(),
-                                    request.getStatus()
-                            );
-                            bw.write(line);
-                            bw.newLine();
-                        } catch (IOException e) {
-                            System.out.println("Error writing request " + request.getRequestID() + ": " + e.getMessage());
-                        }
-                    });
-
-            System.out.println("Successfully saved " + requestMap.size() + " replenishment requests to " + REQUEST_CSV_PATH);
+                    .toList();
+            for (ReplenishmentRequest request : requests) {
+                String line = String.format("%d,%s,%d,%s",
+                        request.getRequestID(),
+                        escapeCSV(request.getMedicine().getMedicineName()),
+                        request.getRequestedQuantity(),
+                        request.getStatus()
+                );
+                bw.write(line);
+                bw.newLine();
+            }
+            bw.commit();
+
+            System.out.println("Successfully saved " + requests.size() + " replenishment requests to " + REQUEST_CSV_PATH);
 
         } catch (IOException e) {
+            markDirty(DataSet.REQUESTS);
             System.out.println("Error saving replenishment requests to CSV: " + e.getMessage());
             throw new RuntimeException("Failed to save replenishment request data", e);
         }
+        recordSave(DataSet.REQUESTS);
     }
 
     /**
@@ -819,19 +1504,33 @@ public class Database {
 
     public static void updatePassword(User user, String newPassword) {
         user.setPassword(newPassword);
-
-        // Update the user in the appropriate map
-        if (user instanceof Doctor) {
-            Database.doctorsMap.put(user.getID(), user);
-        } else if (user instanceof Administrator) {
-            Database.adminsMap.put(user.getID(), user);
-        } else if (user instanceof Pharmacist) {
-            Database.pharmsMap.put(user.getID(), user);
-        } else if (user instanceof Patient) {
-            Database.patientsMap.put(user.getID(), user);
-        }
+        users.save(user);
 
         System.out.println("Password updated!");
     }
 
+    /**
+     * Size and last modification time of a data file, used as a cheap freshness check.
+     */
+    private static class FileStamp {
+        private final long size;
+        private final long lastModified;
+
+        FileStamp(File file) {
+            this.size = file.length();
+            this.lastModified = file.lastModified();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof FileStamp)) return false;
+            FileStamp stamp = (FileStamp) other;
+            return size == stamp.size && lastModified == stamp.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + Long.hashCode(lastModified);
+        }
+    }
 }
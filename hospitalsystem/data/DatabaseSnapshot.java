@@ -0,0 +1,601 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.*;
+import hospitalsystem.model.*;
+import hospitalsystem.model.Appointment.AppointmentSlot;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of the Database maps, used for a fast warm start.
+ * The CSV files remain the interchange format; the snapshot holds one section per
+ * {@link DataSet}, each stamped with the size and modification time of the CSV file it
+ * mirrors. A section is only used while its CSV file still has that stamp, otherwise the
+ * CSV file is parsed as usual.
+ *
+ * Each section starts with a table of the distinct strings it uses, followed by
+ * length-prefixed records that refer to strings by index. Enums are stored as ordinals,
+ * dates as epoch days and appointment times as epoch minutes.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class DatabaseSnapshot {
+
+    /** Path of the binary snapshot */
+    static final String SNAPSHOT_PATH = "hospitalsystem/data/Database.snapshot";
+
+    private static final int MAGIC = 0x484D5353; // "HMSS"
+    private static final int VERSION = 1;
+    private static final int NONE = -1;
+
+    /**
+     * Writes all data sets to the snapshot, replacing the previous one. Must only be called
+     * while every data set is loaded and matches its CSV file, e.g. right after saving or
+     * loading all data, as each section is stamped with the current CSV file.
+     *
+     * @param csvPaths the CSV file mirrored by each data set
+     */
+    static void write(Map<DataSet, String> csvPaths) {
+        long startTime = System.nanoTime();
+        Path target = new File(SNAPSHOT_PATH).toPath();
+        Path temp = new File(SNAPSHOT_PATH + ".tmp").toPath();
+        try {
+            List<byte[]> sections = new ArrayList<>();
+            for (DataSet set : DataSet.values()) {
+                sections.add(encode(set));
+            }
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp.toFile()), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(sections.size());
+                // Directory: data set, CSV stamp, section offset and length
+                long offset = 12L + sections.size() * (1 + 8 + 8 + 8 + 4L);
+                for (DataSet set : DataSet.values()) {
+                    File csv = new File(csvPaths.get(set));
+                    byte[] section = sections.get(set.ordinal());
+                    out.writeByte(set.ordinal());
+                    out.writeLong(csv.length());
+                    out.writeLong(csv.lastModified());
+                    out.writeLong(offset);
+                    out.writeInt(section.length);
+                    offset += section.length;
+                }
+                for (byte[] section : sections) {
+                    out.write(section);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.printf("Wrote data snapshot (%d KB) in %d ms%n",
+                    target.toFile().length() / 1024, (System.nanoTime() - startTime) / 1_000_000);
+        } catch (IOException e) {
+            System.out.println("Error writing data snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks whether any section of the snapshot is missing or no longer matches its CSV file.
+     *
+     * @param csvPaths the CSV file mirrored by each data set
+     * @return true if the snapshot should be rewritten
+     */
+    static boolean isStale(Map<DataSet, String> csvPaths) {
+        for (DataSet set : DataSet.values()) {
+            if (locate(set, csvPaths.get(set)) == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads staff into the staff maps if the snapshot's staff section is current.
+     *
+     * @param csvPath path of the staff CSV file
+     * @return true if the staff were read from the snapshot
+     */
+    static boolean readStaff(String csvPath) {
+        Section in = section(DataSet.STAFF, csvPath);
+        if (in == null) {
+            return false;
+        }
+        decodeStaff(in);
+        System.out.println("Successfully loaded " + (Database.doctorsMap.size() + Database.adminsMap.size()
+                + Database.pharmsMap.size()) + " staff members from snapshot");
+        return true;
+    }
+
+    /**
+     * Reads patients into patientsMap if the snapshot's patient section is current.
+     *
+     * @param csvPath path of the patient CSV file
+     * @return true if the patients were read from the snapshot
+     */
+    static boolean readPatients(String csvPath) {
+        Section in = section(DataSet.PATIENTS, csvPath);
+        if (in == null) {
+            return false;
+        }
+        decodePatients(in);
+        return true;
+    }
+
+    /**
+     * Reads medicines and their batches into inventoryMap if the snapshot's inventory section is current.
+     *
+     * @param csvPath path of the inventory CSV file
+     * @return true if the inventory was read from the snapshot
+     */
+    static boolean readInventory(String csvPath) {
+        Section in = section(DataSet.INVENTORY, csvPath);
+        if (in == null) {
+            return false;
+        }
+        decodeInventory(in);
+        System.out.println("Successfully loaded " + Database.inventoryMap.size() + " medicines from snapshot");
+        return true;
+    }
+
+    /**
+     * Reads appointments, with their outcomes and prescriptions, if the snapshot's appointment
+     * section is current. Doctors, patients and medicines are resolved from the Database maps;
+     * the appointments are not linked.
+     *
+     * @param csvPath path of the appointment CSV file
+     * @param target the map receiving the appointments, keyed by appointment ID
+     * @return true if the appointments were read from the snapshot
+     */
+    static boolean readAppointments(String csvPath, Map<String, Appointment> target) {
+        Section in = section(DataSet.APPOINTMENTS, csvPath);
+        if (in == null) {
+            return false;
+        }
+        decodeAppointments(in, target);
+        return true;
+    }
+
+    /**
+     * Reads replenishment requests into requestMap if the snapshot's request section is current.
+     *
+     * @param csvPath path of the request CSV file
+     * @return true if the requests were read from the snapshot
+     */
+    static boolean readRequests(String csvPath) {
+        Section in = section(DataSet.REQUESTS, csvPath);
+        if (in == null) {
+            return false;
+        }
+        decodeRequests(in);
+        System.out.println("Successfully loaded " + Database.requestMap.size() + " replenishment requests from snapshot");
+        return true;
+    }
+
+    /**
+     * Decodes a section produced by {@link #encode} into the Database maps, or for
+     * appointments into the given map without linking them.
+     *
+     * @param set the data set the section holds
+     * @param bytes the section
+     * @param appointments the map receiving appointments, keyed by appointment ID
+     */
+    static void decode(DataSet set, ByteBuffer bytes, Map<String, Appointment> appointments) {
+        Section in = new Section(bytes);
+        switch (set) {
+            case STAFF -> decodeStaff(in);
+            case PATIENTS -> decodePatients(in);
+            case INVENTORY -> decodeInventory(in);
+            case APPOINTMENTS -> decodeAppointments(in, appointments);
+            case REQUESTS -> decodeRequests(in);
+        }
+    }
+
+    private static void decodeStaff(Section in) {
+        for (int i = 0, n = in.records(); i < n; i++) {
+            int end = in.recordEnd();
+            String staffID = in.string();
+            String name = in.string();
+            UserType role = UserType.values()[in.buffer.get()];
+            String gender = in.string();
+            int age = in.buffer.getInt();
+            String password = in.string();
+            switch (role) {
+                case DOCTOR -> Database.doctorsMap.put(staffID, new Doctor(staffID, name, age, gender, password));
+                case ADMINISTRATOR -> Database.adminsMap.put(staffID, new Administrator(staffID, name, age, gender, password));
+                case PHARMACIST -> Database.pharmsMap.put(staffID, new Pharmacist(staffID, name, age, gender, password));
+                case PATIENT -> { } // Patients are not staff
+            }
+            in.buffer.position(end);
+        }
+    }
+
+    private static void decodePatients(Section in) {
+        int currentYear = LocalDate.now().getYear();
+        for (int i = 0, n = in.records(); i < n; i++) {
+            int end = in.recordEnd();
+            String id = in.string();
+            String name = in.string();
+            LocalDate dob = LocalDate.ofEpochDay(in.buffer.getInt());
+            String gender = in.string();
+            BloodType bloodType = BloodType.values()[in.buffer.get()];
+            String phone = in.string();
+            String email = in.string();
+            String password = in.string();
+            int age = currentYear - dob.getYear();
+            Database.patientsMap.put(id, new Patient(id, name, phone, dob, age, gender, bloodType, email, password));
+            in.buffer.position(end);
+        }
+    }
+
+    private static void decodeInventory(Section in) {
+        for (int i = 0, n = in.records(); i < n; i++) {
+            int end = in.recordEnd();
+            String medicineName = in.string();
+            Medicine medicine = new Medicine(medicineName, in.buffer.getInt(), "");
+            int batchCount = in.buffer.getInt();
+            List<Medicine.Batch> batches = new ArrayList<>(batchCount);
+            for (int b = 0; b < batchCount; b++) {
+                int quantity = in.buffer.getInt();
+                batches.add(medicine.new Batch(quantity, LocalDate.ofEpochDay(in.buffer.getInt())));
+            }
+            medicine.setBatch(batches);
+            Database.inventoryMap.put(medicineName, medicine);
+            in.buffer.position(end);
+        }
+    }
+
+    private static void decodeAppointments(Section in, Map<String, Appointment> target) {
+        AppointmentStatus[] statuses = AppointmentStatus.values();
+        for (int i = 0, n = in.records(); i < n; i++) {
+            int end = in.recordEnd();
+            String appointmentID = in.string();
+            String patientID = in.string();
+            String doctorID = in.string();
+            int slotMinute = in.buffer.getInt();
+            AppointmentStatus status = statuses[in.buffer.get()];
+            boolean available = in.buffer.get() != 0;
+            String notes = in.string();
+            int medicineCount = in.buffer.getShort();
+
+            User doctorUser = Database.doctorsMap.get(doctorID);
+            if (!(doctorUser instanceof Doctor)) {
+                System.out.println("Invalid doctor for appointment: " + appointmentID);
+                in.buffer.position(end);
+                continue;
+            }
+            User patientUser = patientID == null ? null : Database.patientsMap.get(patientID);
+            AppointmentSlot slot = new AppointmentSlot(slotMinute);
+            Appointment appointment = new Appointment(appointmentID,
+                    patientUser instanceof Patient ? (Patient) patientUser : null, (Doctor) doctorUser, slot);
+            appointment.setStatus(status);
+            appointment.setIsAvailable(available);
+            appointment.setConsultationNotes(notes);
+
+            List<Medicine.MedicineSet> medicineSets = new ArrayList<>(medicineCount);
+            for (int m = 0; m < medicineCount; m++) {
+                String medicineName = in.string();
+                int quantity = in.buffer.getInt();
+                Medicine medicine = Database.inventoryMap.get(medicineName);
+                if (medicine == null && !Database.isInventoryLoaded()) {
+                    medicine = new Medicine(medicineName, 0, "");
+                }
+                if (medicine != null) {
+                    medicineSets.add(new Medicine.MedicineSet(medicine, quantity));
+                } else {
+                    System.out.println("WARNING: Medicine not found in inventory: " + medicineName);
+                }
+            }
+            // Records written before the prescription status was saved end here, and are pending
+            PrescriptionStatus prescriptionStatus = in.buffer.position() < end
+                    ? PrescriptionStatus.values()[in.buffer.get()]
+                    : PrescriptionStatus.PENDING;
+            if (!medicineSets.isEmpty()) {
+                appointment.setPrescription(new Prescription(medicineSets, doctorID,
+                        patientID == null ? "" : patientID, prescriptionStatus));
+            }
+            target.put(appointmentID, appointment);
+            in.buffer.position(end);
+        }
+    }
+
+    private static void decodeRequests(Section in) {
+        for (int i = 0, n = in.records(); i < n; i++) {
+            int end = in.recordEnd();
+            int requestID = in.buffer.getInt();
+            String medicineName = in.string();
+            int requestedQuantity = in.buffer.getInt();
+            RequestStatus status = RequestStatus.values()[in.buffer.get()];
+            Medicine medicine = Database.inventoryMap.get(medicineName);
+            if (medicine == null) {
+                System.out.println("Warning: Medicine " + medicineName + " not found for request " + requestID);
+            } else {
+                ReplenishmentRequest request = new ReplenishmentRequest(requestID, medicine, requestedQuantity);
+                request.setStatus(status);
+                Database.requestMap.put(requestID, request);
+            }
+            in.buffer.position(end);
+        }
+    }
+
+    /**
+     * Encodes one data set from the Database maps into a section.
+     *
+     * @param set the data set to encode
+     * @return the section
+     * @throws IOException if the section cannot be written
+     */
+    static byte[] encode(DataSet set) throws IOException {
+        List<Appointment> appointments = List.of();
+        if (set == DataSet.APPOINTMENTS) {
+            // In ID order, like Appointment.csv, so appointments are linked in the same order.
+            // Archived appointments loaded for history views are not part of the image
+            appointments = new ArrayList<>(Database.appointmentMap.values());
+            appointments.removeIf(appointment -> Database.isArchived(appointment.getAppointmentID()));
+            appointments.sort(Comparator.comparing(Appointment::getAppointmentID));
+        }
+        return encode(set, appointments);
+    }
+
+    /**
+     * Encodes a single appointment into an appointment section of one record.
+     *
+     * @param appointment the appointment to encode
+     * @return the section
+     * @throws IOException if the section cannot be written
+     */
+    static byte[] encodeAppointment(Appointment appointment) throws IOException {
+        return encode(DataSet.APPOINTMENTS, List.of(appointment));
+    }
+
+    private static byte[] encode(DataSet set, List<Appointment> appointments) throws IOException {
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+        DataOutputStream record = new DataOutputStream(recordBytes);
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+        int count = 0;
+
+        switch (set) {
+            case STAFF -> {
+                List<User> staff = new ArrayList<>(Database.doctorsMap.values());
+                staff.addAll(Database.adminsMap.values());
+                staff.addAll(Database.pharmsMap.values());
+                for (User user : staff) {
+                    UserType role = user instanceof Doctor ? UserType.DOCTOR
+                            : user instanceof Administrator ? UserType.ADMINISTRATOR : UserType.PHARMACIST;
+                    record.writeInt(strings.id(user.getID()));
+                    record.writeInt(strings.id(user.getName()));
+                    record.writeByte(role.ordinal());
+                    record.writeInt(strings.id(user.getGender()));
+                    record.writeInt(user.getAge());
+                    record.writeInt(strings.id(user.getPassword()));
+                    count += flush(recordBytes, body);
+                }
+            }
+            case PATIENTS -> {
+                for (User user : Database.patientsMap.values()) {
+                    Patient patient = (Patient) user;
+                    record.writeInt(strings.id(patient.getID()));
+                    record.writeInt(strings.id(patient.getName()));
+                    record.writeInt((int) patient.getDOB().toEpochDay());
+                    record.writeInt(strings.id(patient.getGender()));
+                    record.writeByte(patient.getBloodType().ordinal());
+                    record.writeInt(strings.id(patient.getPhoneNumber()));
+                    record.writeInt(strings.id(patient.getEmail()));
+                    record.writeInt(strings.id(patient.getPassword()));
+                    count += flush(recordBytes, body);
+                }
+            }
+            case INVENTORY -> {
+                for (Medicine medicine : Database.inventoryMap.values()) {
+                    record.writeInt(strings.id(medicine.getMedicineName()));
+                    record.writeInt(medicine.getMinStockLevel());
+                    List<Medicine.Batch> batches = medicine.getBatchesUnordered();
+                    record.writeInt(batches.size());
+                    for (Medicine.Batch batch : batches) {
+                        record.writeInt(batch.getQuantity());
+                        record.writeInt((int) batch.getExpirationDate().toEpochDay());
+                    }
+                    count += flush(recordBytes, body);
+                }
+            }
+            case APPOINTMENTS -> {
+                for (Appointment appointment : appointments) {
+                    Patient patient = appointment.getPatient();
+                    Prescription prescription = appointment.getPrescription();
+                    Map<Medicine, Integer> medicines = prescription == null ? Map.of() : prescription.getMedicineList();
+                    record.writeInt(strings.id(appointment.getAppointmentID()));
+                    record.writeInt(patient == null ? NONE : strings.id(patient.getID()));
+                    record.writeInt(strings.id(appointment.getDoctor().getID()));
+                    record.writeInt(appointment.getSlotMinute());
+                    record.writeByte(appointment.getStatus().ordinal());
+                    record.writeByte(appointment.getIsAvailable() ? 1 : 0);
+                    record.writeInt(strings.id(appointment.getConsultationNotes()));
+                    record.writeShort(medicines.size());
+                    for (Map.Entry<Medicine, Integer> entry : medicines.entrySet()) {
+                        record.writeInt(strings.id(entry.getKey().getMedicineName()));
+                        record.writeInt(entry.getValue());
+                    }
+                    record.writeByte(prescription == null ? 0 : prescription.getStatus().ordinal());
+                    count += flush(recordBytes, body);
+                }
+            }
+            case REQUESTS -> {
+                for (ReplenishmentRequest request : Database.requestMap.values()) {
+                    record.writeInt(request.getRequestID());
+                    record.writeInt(strings.id(request.getMedicine().getMedicineName()));
+                    record.writeInt(request.getRequestedQuantity());
+                    record.writeByte(request.getStatus().ordinal());
+                    count += flush(recordBytes, body);
+                }
+            }
+        }
+
+        ByteArrayOutputStream sectionBytes = new ByteArrayOutputStream(bodyBytes.size() + strings.size() * 16 + 8);
+        DataOutputStream section = new DataOutputStream(sectionBytes);
+        strings.writeTo(section);
+        section.writeInt(count);
+        bodyBytes.writeTo(section);
+        return sectionBytes.toByteArray();
+    }
+
+    /**
+     * Appends the buffered record to the section body with its length prefix.
+     *
+     * @return 1, the number of records written
+     */
+    private static int flush(ByteArrayOutputStream record, DataOutputStream body) throws IOException {
+        body.writeInt(record.size());
+        record.writeTo(body);
+        record.reset();
+        return 1;
+    }
+
+    /**
+     * Finds the section for a data set and checks that it still matches the CSV file.
+     *
+     * @return the section positioned at its record count, or null if it is missing or stale
+     */
+    private static Section section(DataSet set, String csvPath) {
+        long[] location = locate(set, csvPath);
+        if (location == null) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(new File(SNAPSHOT_PATH).toPath(), StandardOpenOption.READ)) {
+            return new Section(channel.map(FileChannel.MapMode.READ_ONLY, location[0], location[1]));
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ignoring unreadable data snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Looks up a data set in the snapshot directory and checks its stamp against the CSV file.
+     *
+     * @return the section's offset and length, or null if it is missing or stale
+     */
+    private static long[] locate(DataSet set, String csvPath) {
+        File file = new File(SNAPSHOT_PATH);
+        File csv = new File(csvPath);
+        if (!file.exists() || !csv.exists()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(12);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < 12 || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            int sectionCount = header.getInt();
+            ByteBuffer directory = ByteBuffer.allocate(sectionCount * (1 + 8 + 8 + 8 + 4));
+            channel.read(directory, 12);
+            directory.flip();
+            for (int i = 0; i < sectionCount; i++) {
+                int ordinal = directory.get();
+                long csvSize = directory.getLong();
+                long csvLastModified = directory.getLong();
+                long offset = directory.getLong();
+                int length = directory.getInt();
+                if (ordinal == set.ordinal()) {
+                    boolean current = csvSize == csv.length() && csvLastModified == csv.lastModified();
+                    return current ? new long[] {offset, length} : null;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ignoring unreadable data snapshot: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * A section being read: its string table followed by length-prefixed records.
+     */
+    private static class Section {
+        private final ByteBuffer buffer;
+        private final String[] strings;
+
+        Section(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        /**
+         * @return the number of records, read once before the first record
+         */
+        int records() {
+            return buffer.getInt();
+        }
+
+        /**
+         * Reads the length prefix of the next record.
+         *
+         * @return the offset just past the record
+         */
+        int recordEnd() {
+            int length = buffer.getInt();
+            return buffer.position() + length;
+        }
+
+        /**
+         * @return the string referenced by the next index, or null if none
+         */
+        String string() {
+            int id = buffer.getInt();
+            return id == NONE ? null : strings[id];
+        }
+    }
+
+    /**
+     * Interns the strings of a section being written, assigning each distinct string an index.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int id(String value) {
+            if (value == null) {
+                value = "";
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(values.size());
+            for (String value : values) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+}
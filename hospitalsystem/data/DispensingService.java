@@ -0,0 +1,154 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.DataSet;
+import hospitalsystem.enums.PrescriptionStatus;
+import hospitalsystem.model.Appointment;
+import hospitalsystem.model.Medicine;
+import hospitalsystem.model.Medicine.Batch;
+import hospitalsystem.model.Prescription;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Dispenses prescriptions from the inventory, all or nothing: either every prescribed
+ * medicine is taken from stock and the prescription marked as dispensed, or, if any
+ * medicine is short, nothing is taken and the prescription is left as it was.
+ *
+ * A dispense locks the prescription and then each prescribed medicine in name order, so
+ * that pharmacists dispensing prescriptions with medicines in common cannot deadlock, and
+ * checks and takes all of the stock while holding every lock. Anyone reading stock under a
+ * medicine's lock, which every read of its batches does, sees a prescription either fully
+ * dispensed or not at all. Stock is taken first-expiry-first-out, after expired batches of
+ * the prescribed medicines are retired.
+ *
+ * The prescription and the stock are kept in different files, so they are not persisted
+ * as one unit; instead they are persisted in an order that cannot dispense a prescription
+ * twice. The appointment is saved once the medicines are unlocked, as the storage engine
+ * must never be waited on while a medicine is locked, and the medicines are then saved
+ * through a group commit. From taking the stock until the appointment is saved, a dispense
+ * holds the persist order lock shared; saves of the inventory, and checkpoints that
+ * rewrite it, hold it exclusively and force appointment changes to disk first, so saved
+ * stock never reflects a dispense whose prescription is not saved. A crash before the
+ * inventory is saved leaves the prescription dispensed with its stock not taken on disk,
+ * never the other way around.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class DispensingService {
+
+    /** Held shared by each dispense until its appointment is saved, and exclusively by saves of the inventory */
+    private static final ReentrantReadWriteLock persistOrder = new ReentrantReadWriteLock();
+
+    /**
+     * Returns the lock that a save of the inventory holds, so that it waits for the
+     * appointments of prescriptions whose stock was taken to be saved first. Must not be
+     * acquired while a medicine or the storage engine is locked.
+     *
+     * @return the exclusive persist order lock
+     */
+    static Lock inventorySaveLock() {
+        return persistOrder.writeLock();
+    }
+
+    /**
+     * Dispenses the prescription of an appointment and saves the appointment. Prints the
+     * reason if it cannot be dispensed.
+     *
+     * @param appointment the appointment
+     * @return true if the prescription was dispensed, false if nothing was taken
+     */
+    public static boolean dispense(Appointment appointment) {
+        Prescription prescription = appointment.getPrescription();
+        if (prescription == null) {
+            System.out.println("No prescription found for this appointment.");
+            return false;
+        }
+        List<Medicine> medicines = new ArrayList<>();
+        List<Integer> quantities = new ArrayList<>();
+        synchronized (prescription) {
+            if (prescription.getStatus() == PrescriptionStatus.DISPENSED) {
+                System.out.println("Prescription has already been dispensed.");
+                return false;
+            }
+            // By name, as prescriptions may refer to medicines loaded before the inventory was last reloaded
+            Map<String, Integer> byName = new TreeMap<>();
+            for (Map.Entry<Medicine, Integer> entry : prescription.getMedicineList().entrySet()) {
+                byName.merge(entry.getKey().getMedicineName(), entry.getValue(), Integer::sum);
+            }
+            for (Map.Entry<String, Integer> entry : byName.entrySet()) {
+                Medicine medicine = Database.inventory().findByName(entry.getKey());
+                if (medicine == null) {
+                    System.out.println("Medicine " + entry.getKey() + " does not exist in the inventory.");
+                    return false;
+                }
+                medicines.add(medicine);
+                quantities.add(entry.getValue());
+            }
+        }
+
+        ExpirySweeper.retireExpired(medicines, LocalDate.now());
+
+        boolean dispensed;
+        persistOrder.readLock().lock();
+        try {
+            synchronized (prescription) {
+                dispensed = prescription.getStatus() != PrescriptionStatus.DISPENSED
+                        && dispenseLocked(prescription, medicines, quantities, 0);
+            }
+            if (dispensed) {
+                // Once the medicines are unlocked, and before any save of the inventory can take the stock taken
+                Database.appointments().save(appointment);
+            }
+        } finally {
+            persistOrder.readLock().unlock();
+        }
+        if (dispensed) {
+            for (Medicine medicine : medicines) {
+                Database.inventory().save(medicine);
+            }
+            Database.requestSave(DataSet.INVENTORY);
+        }
+        return dispensed;
+    }
+
+    /**
+     * Locks the medicines from the given position on, one inside the other, and then
+     * dispenses with every medicine locked.
+     */
+    private static boolean dispenseLocked(Prescription prescription, List<Medicine> medicines,
+                                          List<Integer> quantities, int position) {
+        if (position < medicines.size()) {
+            synchronized (medicines.get(position)) {
+                return dispenseLocked(prescription, medicines, quantities, position + 1);
+            }
+        }
+
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < medicines.size(); i++) {
+            Medicine medicine = medicines.get(i);
+            Batch soonest = medicine.getSoonestExpiringBatch();
+            if (soonest != null && soonest.getExpirationDate().isBefore(today)) {
+                // Expired since expired stock was retired above, such as at a day rollover
+                System.out.println("Stock of " + medicine.getMedicineName() + " has just expired. Please try again.");
+                return false;
+            }
+            if (medicine.getTotalQuantity() < quantities.get(i)) {
+                System.out.printf("Insufficient stock of %s: %d prescribed, %d in stock.%n",
+                        medicine.getMedicineName(), quantities.get(i), medicine.getTotalQuantity());
+                return false;
+            }
+        }
+        prescription.setStatus(PrescriptionStatus.DISPENSED);
+        for (int i = 0; i < medicines.size(); i++) {
+            medicines.get(i).takeStock(quantities.get(i));
+        }
+        return true;
+    }
+}
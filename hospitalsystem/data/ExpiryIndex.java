@@ -0,0 +1,104 @@
+package hospitalsystem.data;
+
+import hospitalsystem.model.Medicine;
+import hospitalsystem.model.Medicine.Batch;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Index of the batches of every medicine in inventoryMap by expiration date, so that the
+ * batches that have expired, or will soon, are found by reading the start of one sorted
+ * map instead of walking every batch of every medicine.
+ *
+ * The index is rebuilt when the inventory is loaded and updated whenever a medicine is
+ * saved through the repository, which every stock change goes through. It remembers the
+ * batches each medicine was indexed with, so an update replaces them. Batches used up
+ * since the medicine was last saved are skipped when read.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class ExpiryIndex {
+
+    /** Batches of all medicines, by expiration date */
+    private final NavigableMap<LocalDate, Set<Batch>> byExpiry = new TreeMap<>();
+    /** Batches each medicine is currently indexed with, by medicine name */
+    private final Map<String, Set<Batch>> indexed = new HashMap<>();
+
+    /**
+     * Indexes the current batches of a medicine: batches used up or removed since it was
+     * last indexed are dropped and new batches added, and the rest are left in place.
+     *
+     * @param medicine the medicine
+     */
+    synchronized void put(Medicine medicine) {
+        Set<Batch> batches = indexed.computeIfAbsent(medicine.getMedicineName(), name -> identitySet());
+        for (Iterator<Batch> iterator = batches.iterator(); iterator.hasNext(); ) {
+            Batch batch = iterator.next();
+            if (batch.getMedicine() != medicine || !batch.isInStock()) {
+                iterator.remove();
+                Set<Batch> bucket = byExpiry.get(batch.getExpirationDate());
+                bucket.remove(batch);
+                if (bucket.isEmpty()) {
+                    byExpiry.remove(batch.getExpirationDate());
+                }
+            }
+        }
+        for (Batch batch : medicine.getBatchesUnordered()) {
+            if (batches.add(batch)) {
+                byExpiry.computeIfAbsent(batch.getExpirationDate(), date -> identitySet()).add(batch);
+            }
+        }
+    }
+
+    /**
+     * Replaces the index with the batches of the given medicines.
+     *
+     * @param medicines every loaded medicine
+     */
+    synchronized void rebuild(Collection<Medicine> medicines) {
+        clear();
+        for (Medicine medicine : medicines) {
+            put(medicine);
+        }
+    }
+
+    /**
+     * Removes every batch from the index.
+     */
+    synchronized void clear() {
+        byExpiry.clear();
+        indexed.clear();
+    }
+
+    private static Set<Batch> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * @param date the first date not included
+     * @return the batches still in stock that expire before the date, soonest expiring first
+     */
+    synchronized List<Batch> findExpiringBefore(LocalDate date) {
+        List<Batch> batches = new ArrayList<>();
+        for (Set<Batch> bucket : byExpiry.headMap(date, false).values()) {
+            for (Batch batch : bucket) {
+                if (batch.isInStock()) {
+                    batches.add(batch);
+                }
+            }
+        }
+        return batches;
+    }
+}
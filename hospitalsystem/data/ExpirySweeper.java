@@ -0,0 +1,141 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.DataSet;
+import hospitalsystem.model.Medicine;
+import hospitalsystem.model.Medicine.Batch;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retires expired stock. Expired batches are read off the start of the expiry index and
+ * removed from the head of each medicine's batches, so the cost is the number of expired
+ * batches rather than the size of the inventory. A background task does this just after
+ * each day rollover once the inventory is loaded, and administrators can do it on demand.
+ * Every retired batch is recorded with one line in an audit log.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class ExpirySweeper {
+
+    /** Path of the log of retired batches */
+    static final String AUDIT_LOG_PATH = "hospitalsystem/data/Expiry_Audit.log";
+
+    private static final String AUDIT_LOG_HEADER = "Retired At,Medicine Name,Quantity,Expiry Date";
+
+    private static ScheduledExecutorService sweeper;
+
+    /**
+     * Starts the background task that retires expired stock after each day rollover.
+     * Calling it again has no effect.
+     */
+    static synchronized void start() {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expiry-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleNextSweep();
+    }
+
+    /**
+     * Schedules a sweep just after the next midnight. Each sweep schedules the next, so a
+     * day that is not 24 hours long, such as at a daylight saving change, does not shift it.
+     */
+    private static void scheduleNextSweep() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime nextDay = now.toLocalDate().plusDays(1).atStartOfDay();
+        sweeper.schedule(ExpirySweeper::sweep, Duration.between(now, nextDay).toMillis() + 1, TimeUnit.MILLISECONDS);
+    }
+
+    private static void sweep() {
+        try {
+            if (Database.isInventoryLoaded()) {
+                List<Batch> retired = retireExpired(LocalDate.now());
+                if (!retired.isEmpty()) {
+                    Database.requestSave(DataSet.INVENTORY);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Expiry sweep failed, will retry tomorrow: " + e.getMessage());
+        } finally {
+            scheduleNextSweep();
+        }
+    }
+
+    /**
+     * Removes every batch that expired before the given day from its medicine's stock,
+     * saves the medicines changed and writes an audit line for each retired batch.
+     *
+     * @param today the first day on which stock is still usable
+     * @return the retired batches, soonest expiring first
+     */
+    public static List<Batch> retireExpired(LocalDate today) {
+        Set<Medicine> medicines = new LinkedHashSet<>();
+        for (Batch batch : Database.inventory().findBatchesExpiringBefore(today)) {
+            medicines.add(batch.getMedicine());
+        }
+        return retireExpired(medicines, today);
+    }
+
+    /**
+     * Removes every batch of the given medicines that expired before the given day, saves
+     * the medicines changed and writes an audit line for each retired batch.
+     *
+     * @param medicines the medicines
+     * @param today the first day on which stock is still usable
+     * @return the retired batches
+     */
+    public static List<Batch> retireExpired(Collection<Medicine> medicines, LocalDate today) {
+        List<Batch> retired = new ArrayList<>();
+        for (Medicine medicine : medicines) {
+            List<Batch> removed = medicine.removeBatchesExpiringBefore(today);
+            if (!removed.isEmpty()) {
+                Database.inventory().save(medicine);
+                retired.addAll(removed);
+            }
+        }
+        writeAuditLines(retired);
+        return retired;
+    }
+
+    private static void writeAuditLines(List<Batch> retired) {
+        if (retired.isEmpty()) {
+            return;
+        }
+        String retiredAt = LocalDateTime.now().toString();
+        List<String> lines = new ArrayList<>(retired.size() + 1);
+        if (!new File(AUDIT_LOG_PATH).exists()) {
+            lines.add(AUDIT_LOG_HEADER);
+        }
+        for (Batch batch : retired) {
+            lines.add(String.join(",", retiredAt, Database.escapeCSV(batch.getMedicine().getMedicineName()),
+                    String.valueOf(batch.getQuantity()), batch.getExpirationDate().toString()));
+        }
+        try {
+            Files.write(Path.of(AUDIT_LOG_PATH), lines, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.out.println("Error writing expiry audit log: " + e.getMessage());
+        }
+    }
+}
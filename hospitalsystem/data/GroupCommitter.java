@@ -0,0 +1,106 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.DataSet;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces save requests and appointment change syncs that arrive in a short window into a
+ * single group commit. The first request schedules a commit at most {@link #DELAY_MS}
+ * milliseconds later; every request arriving before then shares it, so a burst of changes
+ * to one data set costs one rewrite and one fsync of the storage engine's appointment changes.
+ * Set -Dhms.groupCommitDelayMs=0 to save and sync immediately on every request.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class GroupCommitter {
+
+    /** Upper bound in milliseconds on how long a requested save or sync is deferred */
+    static final long DELAY_MS = Long.getLong("hms.groupCommitDelayMs", 50);
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "group-commit");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Set<DataSet> pendingSaves = EnumSet.noneOf(DataSet.class);
+    private static boolean syncPending = false;
+    private static ScheduledFuture<?> scheduledCommit;
+
+    static {
+        // Commit whatever is still pending when the application exits
+        Runtime.getRuntime().addShutdownHook(new Thread(GroupCommitter::flush, "group-commit-shutdown"));
+    }
+
+    /**
+     * Requests that a data set be saved as part of the next group commit.
+     *
+     * @param set the data set to save
+     */
+    static void requestSave(DataSet set) {
+        if (DELAY_MS <= 0) {
+            Database.saveIfDirty(set);
+            return;
+        }
+        synchronized (GroupCommitter.class) {
+            pendingSaves.add(set);
+            schedule();
+        }
+    }
+
+    /**
+     * Requests that appointment changes be forced to disk as part of the next group commit.
+     */
+    static void requestSync() {
+        if (DELAY_MS <= 0) {
+            Database.getStorageEngine().sync();
+            return;
+        }
+        synchronized (GroupCommitter.class) {
+            syncPending = true;
+            schedule();
+        }
+    }
+
+    private static void schedule() {
+        if (scheduledCommit == null) {
+            scheduledCommit = executor.schedule(GroupCommitter::flush, DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Performs the pending group commit now: syncs appointment changes once and saves
+     * each requested data set once. Called by the scheduler, before a full save and on exit.
+     */
+    static void flush() {
+        Set<DataSet> saves;
+        boolean syncChanges;
+        synchronized (GroupCommitter.class) {
+            if (scheduledCommit != null) {
+                scheduledCommit.cancel(false);
+                scheduledCommit = null;
+            }
+            saves = EnumSet.copyOf(pendingSaves);
+            syncChanges = syncPending;
+            pendingSaves.clear();
+            syncPending = false;
+        }
+        if (syncChanges) {
+            Database.getStorageEngine().sync();
+        }
+        for (DataSet set : saves) {
+            try {
+                Database.saveIfDirty(set);
+            } catch (RuntimeException e) {
+                System.out.println("Group commit failed for " + set + ": " + e.getMessage());
+            }
+        }
+    }
+}
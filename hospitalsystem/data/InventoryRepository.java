@@ -0,0 +1,45 @@
+package hospitalsystem.data;
+
+import hospitalsystem.model.Medicine;
+import hospitalsystem.model.Medicine.Batch;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Access to the medicine inventory, independent of how it is stored.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public interface InventoryRepository {
+
+    /**
+     * @param medicineName the medicine's name
+     * @return the medicine, or null if it is not in the inventory
+     */
+    Medicine findByName(String medicineName);
+
+    /**
+     * @return a live view of all medicines
+     */
+    Collection<Medicine> findAll();
+
+    /**
+     * Finds batches by expiration date across all medicines, such as the expired ones or
+     * those nearing expiration.
+     *
+     * @param date the first expiration date not included
+     * @return the batches in stock that expire before the date, soonest expiring first
+     */
+    List<Batch> findBatchesExpiringBefore(LocalDate date);
+
+    /**
+     * Adds a medicine, or records that an existing medicine's stock or settings were
+     * changed, so that the change is persisted.
+     *
+     * @param medicine the new or changed medicine
+     */
+    void save(Medicine medicine);
+}
@@ -0,0 +1,217 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.AppointmentStatus;
+import hospitalsystem.enums.DataSet;
+import hospitalsystem.enums.UserType;
+import hospitalsystem.model.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repositories over the Database maps, the in-memory working set that every
+ * {@link StorageEngine} loads into. Saving through a repository updates the map and
+ * hands the change to the active storage engine.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+class MapRepositories {
+
+    private MapRepositories() {
+    }
+
+    /**
+     * Users, kept in one map per role.
+     */
+    static class Users implements UserRepository {
+
+        @Override
+        public User findById(UserType role, String userID) {
+            return map(role).get(userID);
+        }
+
+        @Override
+        public Collection<User> findAll(UserType role) {
+            return map(role).values();
+        }
+
+        @Override
+        public void save(User user) {
+            UserType role = roleOf(user);
+            map(role).put(user.getID(), user);
+            Database.markDirty(role == UserType.PATIENT ? DataSet.PATIENTS : DataSet.STAFF);
+        }
+
+        @Override
+        public User remove(UserType role, String userID) {
+            User removed = map(role).remove(userID);
+            if (removed != null) {
+                Database.markDirty(role == UserType.PATIENT ? DataSet.PATIENTS : DataSet.STAFF);
+            }
+            return removed;
+        }
+
+        private static Map<String, User> map(UserType role) {
+            return switch (role) {
+                case PATIENT -> Database.patientsMap;
+                case DOCTOR -> Database.doctorsMap;
+                case PHARMACIST -> Database.pharmsMap;
+                case ADMINISTRATOR -> Database.adminsMap;
+            };
+        }
+
+        private static UserType roleOf(User user) {
+            if (user instanceof Patient) return UserType.PATIENT;
+            if (user instanceof Doctor) return UserType.DOCTOR;
+            if (user instanceof Pharmacist) return UserType.PHARMACIST;
+            return UserType.ADMINISTRATOR;
+        }
+    }
+
+    /**
+     * Appointments keyed by appointment ID, with lookups served by the appointment index.
+     */
+    static class Appointments implements AppointmentRepository {
+
+        @Override
+        public Appointment findById(String appointmentID) {
+            return Database.appointmentMap.get(appointmentID);
+        }
+
+        @Override
+        public Collection<Appointment> findAll() {
+            return Database.appointmentMap.values();
+        }
+
+        @Override
+        public List<Appointment> findByDoctor(String doctorID) {
+            return Database.appointmentIndex.findByDoctor(doctorID, LocalDateTime.MIN, LocalDateTime.MAX);
+        }
+
+        @Override
+        public List<Appointment> findByDoctorBetween(String doctorID, LocalDateTime from, LocalDateTime to) {
+            return Database.appointmentIndex.findByDoctor(doctorID, from, to);
+        }
+
+        @Override
+        public List<Appointment> findByPatient(String patientID) {
+            return Database.appointmentIndex.findByPatient(patientID);
+        }
+
+        @Override
+        public List<Appointment> findByDoctorAndStatus(String doctorID, AppointmentStatus status) {
+            return Database.appointmentIndex.findByDoctorAndStatus(doctorID, status, null, LocalDateTime.MIN, LocalDateTime.MAX);
+        }
+
+        @Override
+        public List<Appointment> findByDoctorAndStatus(String doctorID, AppointmentStatus status, boolean available) {
+            return Database.appointmentIndex.findByDoctorAndStatus(doctorID, status, available, LocalDateTime.MIN, LocalDateTime.MAX);
+        }
+
+        @Override
+        public List<Appointment> findByDoctorAndStatusBetween(String doctorID, AppointmentStatus status,
+                                                              LocalDateTime from, LocalDateTime to) {
+            return Database.appointmentIndex.findByDoctorAndStatus(doctorID, status, null, from, to);
+        }
+
+        @Override
+        public List<Appointment> findAvailableByDoctor(String doctorID) {
+            return Database.appointmentIndex.findByDoctorAndAvailability(doctorID, true);
+        }
+
+        @Override
+        public Appointment findFirstAvailableByDoctor(String doctorID, LocalDateTime from, LocalDateTime to) {
+            return Database.appointmentIndex.findFirstAvailable(doctorID, from, to);
+        }
+
+        @Override
+        public List<String> findDoctorsAvailableBetween(LocalDateTime from, LocalDateTime to) {
+            return Database.appointmentIndex.findDoctorsAvailable(from, to);
+        }
+
+        @Override
+        public AvailableSlotSearch searchAvailable(LocalDateTime from) {
+            return new AvailableSlotSearch(Database.appointmentIndex, from);
+        }
+
+        @Override
+        public AppointmentQuery query() {
+            return new AppointmentQuery(Database.appointmentIndex);
+        }
+
+        @Override
+        public List<Appointment> findByStatus(AppointmentStatus status) {
+            return Database.appointmentIndex.findByStatus(status);
+        }
+
+        @Override
+        public void save(Appointment appointment) {
+            saveAll(List.of(appointment));
+        }
+
+        @Override
+        public void saveAll(List<Appointment> appointments) {
+            for (Appointment appointment : appointments) {
+                Database.appointmentMap.put(appointment.getAppointmentID(), appointment);
+                Database.appointmentIndex.put(appointment);
+            }
+            Database.recordAppointmentChanges(appointments);
+        }
+    }
+
+    /**
+     * Medicines keyed by name.
+     */
+    static class Inventory implements InventoryRepository {
+
+        @Override
+        public Medicine findByName(String medicineName) {
+            return Database.inventoryMap.get(medicineName);
+        }
+
+        @Override
+        public Collection<Medicine> findAll() {
+            return Database.inventoryMap.values();
+        }
+
+        @Override
+        public List<Medicine.Batch> findBatchesExpiringBefore(LocalDate date) {
+            return Database.expiryIndex.findExpiringBefore(date);
+        }
+
+        @Override
+        public void save(Medicine medicine) {
+            Database.inventoryMap.put(medicine.getMedicineName(), medicine);
+            Database.expiryIndex.put(medicine);
+            ReplenishmentService.medicineSaved(medicine);
+            Database.markDirty(DataSet.INVENTORY);
+        }
+    }
+
+    /**
+     * Replenishment requests keyed by request ID.
+     */
+    static class Requests implements RequestRepository {
+
+        @Override
+        public ReplenishmentRequest findById(int requestID) {
+            return Database.requestMap.get(requestID);
+        }
+
+        @Override
+        public Collection<ReplenishmentRequest> findAll() {
+            return Database.requestMap.values();
+        }
+
+        @Override
+        public void save(ReplenishmentRequest request) {
+            Database.requestMap.put(request.getRequestID(), request);
+            ReplenishmentService.saved(request);
+            Database.markDirty(DataSet.REQUESTS);
+        }
+    }
+}
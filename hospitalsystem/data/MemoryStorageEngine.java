@@ -0,0 +1,63 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.DataSet;
+import hospitalsystem.model.Appointment;
+import java.util.List;
+
+/**
+ * Storage engine that keeps data in memory only. Each data set is seeded from its CSV
+ * file when loaded and changes are never written, so they last only as long as the maps
+ * stay loaded, i.e. for the life of the process in resident mode. Useful for trying
+ * things out and as a baseline when comparing engines.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class MemoryStorageEngine implements StorageEngine {
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public void load(DataSet set) {
+        CsvStorageEngine.seedFromCSV(set);
+    }
+
+    @Override
+    public boolean loadAppointmentsFor(String userID, boolean isPatient) {
+        return false;
+    }
+
+    @Override
+    public void loadAppointmentHistory(String patientID) {
+        // All appointments are loaded
+    }
+
+    @Override
+    public boolean isStale(DataSet set) {
+        return false;
+    }
+
+    @Override
+    public void appointmentsChanged(List<Appointment> appointments) {
+        // Nothing to persist
+    }
+
+    @Override
+    public void sync() {
+        // Nothing to persist
+    }
+
+    @Override
+    public void save(DataSet set) {
+        // Nothing to persist
+    }
+
+    @Override
+    public void checkpoint() {
+        // Nothing to persist
+    }
+}
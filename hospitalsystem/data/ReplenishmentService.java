@@ -0,0 +1,203 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.DataSet;
+import hospitalsystem.enums.RequestStatus;
+import hospitalsystem.enums.Sequence;
+import hospitalsystem.model.Medicine;
+import hospitalsystem.model.ReplenishmentRequest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Files replenishment requests, keeping at most one pending request per medicine: asking
+ * for more of a medicine that already has a pending request raises that request's quantity
+ * instead of filing another.
+ *
+ * Once the inventory is loaded, every medicine tells this service when a stock change
+ * takes it below its minimum stock level or lowers it further. The medicine is only noted
+ * then, as it is still locked; when it is next saved to the inventory, which the thread
+ * that changed it does once its locks are released, a request is filed or raised for
+ * enough to bring it back up to twice its minimum. These requests are filed without
+ * printing anything, as they may come from the background task that retires expired
+ * stock. The medicines currently low on stock are tracked from the same notifications, so
+ * requesting stock for all of them does not scan the inventory. Requests are only filed
+ * this way while the requests are loaded, as the pending requests are not known otherwise;
+ * the medicine is still tracked as low on stock.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class ReplenishmentService {
+
+    /** Pending request of each medicine that has one, by medicine name */
+    private static final Map<String, ReplenishmentRequest> pending = new HashMap<>();
+    /** Names of the medicines below their minimum stock level */
+    private static final Set<String> lowStock = new ConcurrentSkipListSet<>();
+    /** Names of the medicines whose stock fell while low, waiting for their request to be filed or raised */
+    private static final Set<String> lowered = new ConcurrentSkipListSet<>();
+
+    /**
+     * Starts listening to stock changes and records which of the loaded medicines are
+     * already low on stock.
+     *
+     * @param medicines every loaded medicine
+     */
+    static synchronized void start(Collection<Medicine> medicines) {
+        Medicine.setStockListener(ReplenishmentService::stockChanged);
+        lowStock.clear();
+        lowered.clear();
+        for (Medicine medicine : medicines) {
+            if (medicine.getIsLowStock()) {
+                lowStock.add(medicine.getMedicineName());
+            }
+        }
+    }
+
+    /**
+     * Records whether a medicine saved to the inventory is low on stock, such as a new
+     * medicine stocked below its minimum level, and files or raises its request if its
+     * stock fell while low. Called with no medicine locked.
+     *
+     * @param medicine the saved medicine
+     */
+    static void medicineSaved(Medicine medicine) {
+        String medicineName = medicine.getMedicineName();
+        if (!medicine.getIsLowStock()) {
+            lowStock.remove(medicineName);
+            lowered.remove(medicineName);
+            return;
+        }
+        lowStock.add(medicineName);
+        if (lowered.remove(medicineName) && Database.isLoaded(DataSet.REQUESTS)) {
+            synchronized (ReplenishmentService.class) {
+                fileOrRaise(medicine, shortfall(medicine), false);
+            }
+        }
+    }
+
+    /**
+     * Replaces the pending requests with those among the given requests. Should older data
+     * hold several pending requests for one medicine, the earliest is the one raised.
+     *
+     * @param requests every loaded request
+     */
+    static synchronized void indexRequests(Collection<ReplenishmentRequest> requests) {
+        pending.clear();
+        requests.stream()
+                .sorted(Comparator.comparingInt(ReplenishmentRequest::getRequestID))
+                .forEach(ReplenishmentService::saved);
+    }
+
+    /**
+     * Forgets the pending requests and low-stock medicines, as when all data is unloaded.
+     */
+    static synchronized void clear() {
+        pending.clear();
+        lowStock.clear();
+        lowered.clear();
+    }
+
+    /**
+     * Records that a request was saved: a pending request becomes its medicine's pending
+     * request unless the medicine has one, and a request that was approved or rejected is
+     * no longer pending.
+     *
+     * @param request the saved request
+     */
+    static synchronized void saved(ReplenishmentRequest request) {
+        String medicineName = request.getMedicine().getMedicineName();
+        if (request.getStatus() == RequestStatus.PENDING) {
+            pending.putIfAbsent(medicineName, request);
+        } else {
+            pending.remove(medicineName, request);
+        }
+    }
+
+    /**
+     * Requests a quantity of a medicine: files a request if the medicine has no pending
+     * request, and otherwise raises the pending request to the quantity if it is for less.
+     *
+     * @param medicine the medicine
+     * @param quantity the quantity needed
+     * @return the medicine's pending request
+     */
+    public static synchronized ReplenishmentRequest request(Medicine medicine, int quantity) {
+        return fileOrRaise(medicine, quantity, true);
+    }
+
+    private static ReplenishmentRequest fileOrRaise(Medicine medicine, int quantity, boolean report) {
+        ReplenishmentRequest request = pending.get(medicine.getMedicineName());
+        if (request == null) {
+            int requestID = SequenceService.next(Sequence.REPLENISHMENT_REQUEST, () -> Database.requests().findAll().stream()
+                    .mapToInt(ReplenishmentRequest::getRequestID)
+                    .max()
+                    .orElse(0));
+            request = new ReplenishmentRequest(requestID, medicine, quantity);
+            if (report) {
+                System.out.printf("Replenishment request submitted for medicine: %s, quantity: %d%n",
+                        medicine.getMedicineName(), quantity);
+            }
+        } else if (request.getRequestedQuantity() < quantity) {
+            request.setRequestedQuantity(quantity);
+            if (report) {
+                System.out.printf("Pending replenishment request %d for medicine: %s raised to quantity: %d%n",
+                        request.getRequestID(), medicine.getMedicineName(), quantity);
+            }
+        } else {
+            if (report) {
+                System.out.printf("Replenishment request %d for medicine: %s is already pending, quantity: %d%n",
+                        request.getRequestID(), medicine.getMedicineName(), request.getRequestedQuantity());
+            }
+            return request;
+        }
+        Database.requests().save(request);
+        Database.requestSave(DataSet.REQUESTS);
+        return request;
+    }
+
+    /**
+     * Makes sure every medicine below its minimum stock level has a pending request for
+     * enough to bring it back up to twice its minimum.
+     *
+     * @return the pending requests of the medicines low on stock
+     */
+    public static synchronized List<ReplenishmentRequest> requestAllLowStock() {
+        List<ReplenishmentRequest> requests = new ArrayList<>();
+        for (String medicineName : lowStock) {
+            Medicine medicine = Database.inventory().findByName(medicineName);
+            lowered.remove(medicineName);
+            if (medicine != null && medicine.getIsLowStock()) {
+                requests.add(request(medicine, shortfall(medicine)));
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * Called by a medicine, while it is locked, when a stock change takes it below its
+     * minimum stock level, lowers it further, or brings it back up. Only notes the change,
+     * so that the medicine's locks are never held while a request is filed.
+     */
+    private static void stockChanged(Medicine medicine) {
+        if (!medicine.getIsLowStock()) {
+            lowStock.remove(medicine.getMedicineName());
+        } else if (Database.inventory().findByName(medicine.getMedicineName()) == medicine) {
+            lowStock.add(medicine.getMedicineName());
+            lowered.add(medicine.getMedicineName());
+        }
+    }
+
+    /**
+     * @return the quantity that brings a medicine's stock up to twice its minimum level
+     */
+    private static int shortfall(Medicine medicine) {
+        return Math.max(1, medicine.getMinStockLevel() * 2 - medicine.getTotalQuantity());
+    }
+}
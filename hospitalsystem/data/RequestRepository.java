@@ -0,0 +1,33 @@
+package hospitalsystem.data;
+
+import hospitalsystem.model.ReplenishmentRequest;
+import java.util.Collection;
+
+/**
+ * Access to replenishment requests, independent of how they are stored.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public interface RequestRepository {
+
+    /**
+     * @param requestID the request ID
+     * @return the request, or null if it does not exist
+     */
+    ReplenishmentRequest findById(int requestID);
+
+    /**
+     * @return a live view of all requests
+     */
+    Collection<ReplenishmentRequest> findAll();
+
+    /**
+     * Adds a request, or records that an existing request was changed, so that the
+     * change is persisted.
+     *
+     * @param request the new or changed request
+     */
+    void save(ReplenishmentRequest request);
+}
@@ -0,0 +1,123 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.Sequence;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntSupplier;
+
+/**
+ * Allocates the numbers in generated IDs, one counter per kind of ID. The last number
+ * handed out by each counter is kept in Sequences.csv, so allocating never scans the
+ * data for the highest ID in use, and numbers are not reused after records are deleted.
+ *
+ * Every allocation reads the counter, advances it and replaces the file while holding a
+ * lock on Sequences.lock, so sessions in other processes sharing the data directory never
+ * receive the same number; a batch reservation advances the counter once for all its
+ * numbers. The first allocation from each counter in a process also checks the highest
+ * number in use, found by the caller's scan, so a counter that is missing from the file
+ * or behind the data, such as on the first run against existing data, is recovered.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class SequenceService {
+
+    private static final String SEQUENCE_PATH = "hospitalsystem/data/Sequences.csv";
+    private static final String LOCK_PATH = "hospitalsystem/data/Sequences.lock";
+    private static final String SEQUENCE_HEADER = "Sequence,LastValue";
+
+    /** Counters already checked against the data by this process */
+    private static final Set<Sequence> recovered = EnumSet.noneOf(Sequence.class);
+
+    /**
+     * Allocates the next number of a sequence.
+     *
+     * @param sequence the sequence
+     * @param highestInUse finds the highest number in use, on the first allocation from the sequence
+     * @return the allocated number
+     */
+    public static int next(Sequence sequence, IntSupplier highestInUse) {
+        return reserve(sequence, 1, highestInUse);
+    }
+
+    /**
+     * Reserves a block of consecutive numbers of a sequence, for creating many records at once.
+     *
+     * @param sequence the sequence
+     * @param count the number of numbers to reserve
+     * @param highestInUse finds the highest number in use, on the first allocation from the sequence
+     * @return the first reserved number; the block runs up to this number plus count minus one
+     */
+    public static synchronized int reserve(Sequence sequence, int count, IntSupplier highestInUse) {
+        new File(LOCK_PATH).getParentFile().mkdirs();
+        try (FileChannel channel = FileChannel.open(Paths.get(LOCK_PATH),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                Map<Sequence, Integer> lastValues = read();
+                int last = lastValues.getOrDefault(sequence, 0);
+                if (recovered.add(sequence)) {
+                    last = Math.max(last, highestInUse.getAsInt());
+                }
+                lastValues.put(sequence, last + count);
+                write(lastValues);
+                return last + 1;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            // Fall back to the data, which is correct for a single session
+            System.out.println("Error updating ID sequences: " + e.getMessage());
+            recovered.remove(sequence);
+            return highestInUse.getAsInt() + 1;
+        }
+    }
+
+    private static Map<Sequence, Integer> read() throws IOException {
+        Map<Sequence, Integer> lastValues = new EnumMap<>(Sequence.class);
+        File file = new File(SEQUENCE_PATH);
+        if (!file.exists()) {
+            return lastValues;
+        }
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            br.readLine(); // Skip header
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] fields = line.split(",");
+                if (fields.length == 2) {
+                    try {
+                        lastValues.put(Sequence.valueOf(fields[0]), Integer.parseInt(fields[1]));
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Skipping invalid sequence record: " + line);
+                    }
+                }
+            }
+        }
+        return lastValues;
+    }
+
+    private static void write(Map<Sequence, Integer> lastValues) throws IOException {
+        try (AtomicFileWriter bw = AtomicFileWriter.open(SEQUENCE_PATH)) {
+            bw.write(SEQUENCE_HEADER);
+            bw.newLine();
+            for (Map.Entry<Sequence, Integer> entry : lastValues.entrySet()) {
+                bw.write(entry.getKey() + "," + entry.getValue());
+                bw.newLine();
+            }
+            bw.commit();
+        }
+    }
+}
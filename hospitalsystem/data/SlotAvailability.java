@@ -0,0 +1,187 @@
+package hospitalsystem.data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Bitmaps of open appointment slots: one bitmap per doctor per day, with one bit for
+ * each cell of a fixed grid over the day. A bit is set while the doctor has a slot open
+ * for booking that starts in that cell. Searches for free time scan whole words at a time
+ * and skip days without open slots entirely.
+ *
+ * The grid size in minutes is set with -Dhms.slotGridMinutes and must divide a day;
+ * the default of 30 minutes puts every slot generated by doctors in a cell of its own.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class SlotAvailability {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /** Minutes covered by one bit */
+    static final int GRID_MINUTES = gridMinutes(Integer.getInteger("hms.slotGridMinutes", 30));
+
+    private static final int CELLS_PER_DAY = MINUTES_PER_DAY / GRID_MINUTES;
+    private static final int WORDS_PER_DAY = (CELLS_PER_DAY + 63) / 64;
+
+    /** Per doctor, the bitmap of each day that has at least one open slot */
+    private final Map<String, NavigableMap<LocalDate, long[]>> days = new HashMap<>();
+
+    private static int gridMinutes(int minutes) {
+        if (minutes <= 0 || MINUTES_PER_DAY % minutes != 0) {
+            System.out.println("Invalid slot grid of " + minutes + " minutes, using 30");
+            return 30;
+        }
+        return minutes;
+    }
+
+    /**
+     * Marks the cell containing a slot as open.
+     *
+     * @param doctorID the doctor ID
+     * @param time the slot time
+     */
+    void set(String doctorID, LocalDateTime time) {
+        long[] words = days.computeIfAbsent(doctorID, id -> new TreeMap<>())
+                .computeIfAbsent(time.toLocalDate(), day -> new long[WORDS_PER_DAY]);
+        int cell = cell(time.toLocalTime());
+        words[cell >>> 6] |= 1L << cell;
+    }
+
+    /**
+     * Marks the cell containing a slot as no longer open.
+     *
+     * @param doctorID the doctor ID
+     * @param time the slot time
+     */
+    void clear(String doctorID, LocalDateTime time) {
+        NavigableMap<LocalDate, long[]> doctorDays = days.get(doctorID);
+        long[] words = doctorDays == null ? null : doctorDays.get(time.toLocalDate());
+        if (words == null) {
+            return;
+        }
+        int cell = cell(time.toLocalTime());
+        words[cell >>> 6] &= ~(1L << cell);
+        if (isEmpty(words)) {
+            doctorDays.remove(time.toLocalDate());
+            if (doctorDays.isEmpty()) {
+                days.remove(doctorID);
+            }
+        }
+    }
+
+    /**
+     * Clears every bitmap.
+     */
+    void clear() {
+        days.clear();
+    }
+
+    /**
+     * @return the doctors with at least one open slot
+     */
+    List<String> getDoctorIDs() {
+        return new ArrayList<>(days.keySet());
+    }
+
+    /**
+     * Finds the first cell marked open that overlaps a time range.
+     *
+     * @param doctorID the doctor ID
+     * @param from start of the range, inclusive
+     * @param to end of the range, exclusive
+     * @return the start of the cell, or null if no open cell overlaps the range
+     */
+    LocalDateTime nextOpenCell(String doctorID, LocalDateTime from, LocalDateTime to) {
+        return nextOpenCell(doctorID, from, to, LocalTime.MIN, null);
+    }
+
+    /**
+     * Finds the first cell marked open that overlaps both a time range and the given hours
+     * of its day. The hours mask each day's bitmap, so days are still scanned a word at a time.
+     *
+     * @param doctorID the doctor ID
+     * @param from start of the range, inclusive
+     * @param to end of the range, exclusive
+     * @param dayStart the earliest time of day, inclusive
+     * @param dayEnd the latest time of day, exclusive, or null for the end of the day
+     * @return the start of the cell, or null if no open cell overlaps the range and hours
+     */
+    LocalDateTime nextOpenCell(String doctorID, LocalDateTime from, LocalDateTime to,
+                               LocalTime dayStart, LocalTime dayEnd) {
+        NavigableMap<LocalDate, long[]> doctorDays = days.get(doctorID);
+        if (doctorDays == null || !from.isBefore(to)) {
+            return null;
+        }
+        int windowStart = cell(dayStart);
+        int windowEnd = dayEnd == null ? CELLS_PER_DAY : cellsBefore(dayEnd);
+        LocalDate lastDay = to.toLocalDate();
+        for (Map.Entry<LocalDate, long[]> day : doctorDays.subMap(from.toLocalDate(), true, lastDay, true).entrySet()) {
+            int firstCell = day.getKey().equals(from.toLocalDate()) ? Math.max(cell(from.toLocalTime()), windowStart) : windowStart;
+            int endCell = day.getKey().equals(lastDay) ? Math.min(cellsBefore(to.toLocalTime()), windowEnd) : windowEnd;
+            int cell = firstCell < endCell ? firstSetBit(day.getValue(), firstCell, endCell) : -1;
+            if (cell >= 0) {
+                return day.getKey().atStartOfDay().plusMinutes((long) cell * GRID_MINUTES);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the lowest set bit in [fromCell, toCell), a word at a time.
+     */
+    private static int firstSetBit(long[] words, int fromCell, int toCell) {
+        for (int w = fromCell >>> 6; w < words.length && w << 6 < toCell; w++) {
+            long word = words[w];
+            if (w == fromCell >>> 6) {
+                word &= -1L << fromCell; // Shift distance is taken mod 64
+            }
+            if (w == (toCell - 1) >>> 6 && (toCell & 63) != 0) {
+                word &= (1L << toCell) - 1;
+            }
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param time a time
+     * @return the start of the grid cell containing it
+     */
+    static LocalDateTime cellStart(LocalDateTime time) {
+        return time.toLocalDate().atStartOfDay().plusMinutes((long) cell(time.toLocalTime()) * GRID_MINUTES);
+    }
+
+    private static int cell(LocalTime time) {
+        return (time.getHour() * 60 + time.getMinute()) / GRID_MINUTES;
+    }
+
+    /**
+     * @return the number of cells of the day that start before the given time
+     */
+    private static int cellsBefore(LocalTime time) {
+        int minute = time.getHour() * 60 + time.getMinute();
+        boolean onBoundary = minute % GRID_MINUTES == 0 && time.getSecond() == 0 && time.getNano() == 0;
+        return minute / GRID_MINUTES + (onBoundary ? 0 : 1);
+    }
+
+    private static boolean isEmpty(long[] words) {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
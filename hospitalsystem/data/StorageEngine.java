@@ -0,0 +1,83 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.DataSet;
+import hospitalsystem.model.Appointment;
+import java.util.List;
+
+/**
+ * Persistence behind the Database maps. An engine loads each data set into the maps,
+ * persists appointment changes as they happen and writes whole data sets when they are
+ * saved. The engine is chosen at start-up with -Dhms.storage=csv|memory|binary.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public interface StorageEngine {
+
+    /**
+     * @return the name used to select the engine
+     */
+    String getName();
+
+    /**
+     * Loads a data set into its map, which has been cleared. Appointments must be linked
+     * with their doctors and patients; staff, patients and inventory are loaded first.
+     *
+     * @param set the data set to load
+     */
+    void load(DataSet set);
+
+    /**
+     * Loads only one patient's or doctor's appointments, if the engine supports it.
+     *
+     * @param userID the patient or doctor ID
+     * @param isPatient true to load by patient, false by doctor
+     * @return false if the engine can only load all appointments at once
+     */
+    boolean loadAppointmentsFor(String userID, boolean isPatient);
+
+    /**
+     * Loads appointments of closed months that the engine keeps out of the maps until a
+     * history view needs them. Engines that always load all appointments do nothing.
+     *
+     * @param patientID only load this patient's appointments, or null for all
+     */
+    void loadAppointmentHistory(String patientID);
+
+    /**
+     * Checks whether a loaded data set was changed outside this process.
+     *
+     * @param set the data set
+     * @return true if the data set should be reloaded
+     */
+    boolean isStale(DataSet set);
+
+    /**
+     * Persists changes to one or more appointments in a single write, so that changes
+     * made together, such as a reschedule, reach storage together. They need not be
+     * durable until {@link #sync()} returns.
+     *
+     * @param appointments the new or changed appointments
+     */
+    void appointmentsChanged(List<Appointment> appointments);
+
+    /**
+     * Forces appointment changes persisted so far to disk.
+     */
+    void sync();
+
+    /**
+     * Writes a fully loaded data set.
+     *
+     * @param set the data set to write
+     * @throws RuntimeException if the data set could not be written
+     */
+    void save(DataSet set);
+
+    /**
+     * Called after data sets were loaded or saved, for housekeeping such as snapshots
+     * and compaction.
+     */
+    void checkpoint();
+}
@@ -0,0 +1,44 @@
+package hospitalsystem.data;
+
+import hospitalsystem.enums.UserType;
+import hospitalsystem.model.User;
+import java.util.Collection;
+
+/**
+ * Access to patients and staff, independent of how they are stored.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public interface UserRepository {
+
+    /**
+     * @param role the user's role
+     * @param userID the user's ID
+     * @return the user, or null if there is no user with that role and ID
+     */
+    User findById(UserType role, String userID);
+
+    /**
+     * @param role the role to list
+     * @return a live view of all users with the role
+     */
+    Collection<User> findAll(UserType role);
+
+    /**
+     * Adds a user, or records that an existing user was changed, so that it is persisted.
+     *
+     * @param user the new or changed user
+     */
+    void save(User user);
+
+    /**
+     * Removes a user.
+     *
+     * @param role the user's role
+     * @param userID the user's ID
+     * @return the removed user, or null if there was none
+     */
+    User remove(UserType role, String userID);
+}
@@ -0,0 +1,9 @@
+package hospitalsystem.enums;
+
+public enum DataSet {
+    STAFF,
+    PATIENTS,
+    INVENTORY,
+    APPOINTMENTS,
+    REQUESTS
+}
@@ -0,0 +1,10 @@
+package hospitalsystem.enums;
+
+public enum Sequence {
+    APPOINTMENT,
+    PATIENT,
+    DOCTOR,
+    PHARMACIST,
+    ADMINISTRATOR,
+    REPLENISHMENT_REQUEST
+}
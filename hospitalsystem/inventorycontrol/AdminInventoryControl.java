@@ -2,6 +2,8 @@ package hospitalsystem.inventorycontrol;
 
 import hospitalsystem.HMS;
 import hospitalsystem.data.Database;
+import hospitalsystem.data.ExpirySweeper;
+import hospitalsystem.enums.DataSet;
 import hospitalsystem.enums.RequestStatus;
 import hospitalsystem.model.Medicine;
 import hospitalsystem.model.Medicine.Batch;
@@ -105,13 +107,14 @@ public class AdminInventoryControl extends InventoryControl {
             }
     
             Batch newBatch = medicine.new Batch(quantity, expirationDate);
-            medicine.getBatches().add(newBatch);
+            medicine.addBatch(newBatch);
+            Database.inventory().save(medicine);
             System.out.println(medicine.getMedicineName() + " stock updated.");
     }
 
     /**
      * Removes specified quantity of stock from medicine batches.
-     * Removes from oldest batches first and handles batch depletion.
+     * Removes from the soonest expiring batches first and handles batch depletion.
      *
      * @param medicine Medicine object to remove stock from
      * @param quantity Amount of stock to remove
@@ -124,46 +127,35 @@ public class AdminInventoryControl extends InventoryControl {
             return; //Exit
         }
 
-        int remainingQuantity = quantity;
-        Iterator<Batch> iterator = medicine.getBatches().iterator();
-
-        while (iterator.hasNext() && remainingQuantity > 0) {
-            Batch batch = iterator.next();
-            // If fully depleted, remove the batch 
-            if (batch.getQuantity() <= remainingQuantity) {
-                iterator.remove();
-                remainingQuantity -= batch.getQuantity();
-            } else {
-                batch.setQuantity(batch.getQuantity() - remainingQuantity);
-                remainingQuantity = 0; // All quantity removed
-            }
-        }
+        medicine.takeStock(quantity);
+        Database.inventory().save(medicine);
         System.out.println("Stock updated.");
     }
 
     /**
      * Removes all expired medicine batches from inventory.
-     * Checks expiration dates against current date and removes expired stock.
+     * Expired batches are read from the expiry index and each retired batch is audited;
+     * batches nearing expiration are then listed as a warning.
      */
     public static void removeExpiredStock(){
         System.out.println("Checking for expired medicine...");
-        boolean hasExpiredStock = false; 
         LocalDate today = LocalDate.now(); 
 
-        for (Map.Entry<String, Medicine> entry : Database.inventoryMap.entrySet()) {
-            Medicine med = entry.getValue();
-
-            for (Medicine.Batch batch : med.getBatches()) {
-                if (batch.getExpirationDate().isBefore(today)) {
-                    hasExpiredStock = true;
-                    System.out.println("Removing expired batch of " + med.getMedicineName() + 
-                                       ". Batch Expired on: " + batch.getExpirationDate());
-                    removeStock(med, batch.getQuantity());
-                }
-            }
+        List<Batch> retired = ExpirySweeper.retireExpired(today);
+        for (Batch batch : retired) {
+            System.out.println("Removing expired batch of " + batch.getMedicine().getMedicineName() + 
+                               ". Batch Expired on: " + batch.getExpirationDate());
         }
-        if (!hasExpiredStock){
+        if (retired.isEmpty()){
             System.out.println("No expired medicine found.");
+        } else {
+            Database.requestSave(DataSet.INVENTORY);
+        }
+
+        // Same two-week window as Batch.isNearingExpiration
+        for (Batch batch : Database.inventory().findBatchesExpiringBefore(today.plusWeeks(2))) {
+            System.out.println("Nearing expiration: " + batch.getQuantity() + " of " 
+                               + batch.getMedicine().getMedicineName() + ", expires on " + batch.getExpirationDate());
         }
     }
 
@@ -179,7 +171,7 @@ public class AdminInventoryControl extends InventoryControl {
             String medicineName = sc.nextLine();
 
             // Check if medicine already exists  
-            if (Database.inventoryMap.containsKey(medicineName)) {
+            if (Database.inventory().findByName(medicineName) != null) {
                 System.out.println("Medicine " + medicineName + " already exists in the inventory.");
                 continue;
             }
@@ -194,7 +186,7 @@ public class AdminInventoryControl extends InventoryControl {
             int newStock = sc.nextInt();
             sc.nextLine();
             Medicine newMedicine = new Medicine(medicineName, minStockLevel, instructions);
-            Database.inventoryMap.put(medicineName, newMedicine);
+            Database.inventory().save(newMedicine);
             
             // Add batch
             addStock(newMedicine, newStock);
@@ -217,6 +209,7 @@ public class AdminInventoryControl extends InventoryControl {
             try {
                 int newAlertLine = Integer.parseInt(sc.nextLine());
                 medicine.setMinimumSttockLevel(newAlertLine);
+                Database.inventory().save(medicine);
                 System.out.println("Low stock alert level has been updated to " + newAlertLine);
             } catch (NumberFormatException e) {
                 System.out.println("Invalid input. Please enter a valid number.");
@@ -238,7 +231,7 @@ public class AdminInventoryControl extends InventoryControl {
             System.out.println("=========================================");
 
             // Debug print to verify map contents
-            System.out.println("Current requests in system: " + Database.requestMap.size());
+            System.out.println("Current requests in system: " + Database.requests().findAll().size());
 
             if (!displayAllRequests()) {
                 return;
@@ -271,20 +264,23 @@ public class AdminInventoryControl extends InventoryControl {
                 switch (choice) {
                     case 1: // Approve
                         request.setStatus(RequestStatus.APPROVED);
+                        Database.requests().save(request);
                         System.out.println("Request approved.");
 
                         // Add stock
-                        Medicine med = Database.inventoryMap.get(request.getMedicine().getMedicineName());
+                        Medicine med = Database.inventory().findByName(request.getMedicine().getMedicineName());
                         addStock(med, request.getRequestedQuantity());
 
                         // Save changes
-                        Database.saveRequestsToCSV();
+                        Database.requestSave(DataSet.REQUESTS);
+                        Database.requestSave(DataSet.INVENTORY);
                         break;
 
                     case 2: // Reject
                         request.setStatus(RequestStatus.REJECTED);
+                        Database.requests().save(request);
                         System.out.println("Request rejected.");
-                        Database.saveRequestsToCSV();
+                        Database.requestSave(DataSet.REQUESTS);
                         break;
 
                     case 3: // Cancel
@@ -4,7 +4,6 @@ import hospitalsystem.data.Database;
 import hospitalsystem.model.Medicine;
 import hospitalsystem.model.ReplenishmentRequest;
 
-import java.util.Map;
 import java.util.Scanner;
 
 
@@ -29,7 +28,7 @@ public class InventoryControl {
     static final Scanner sc = new Scanner(System.in);
 
     public static void displayInventory() { //used by both
-        if (Database.inventoryMap.isEmpty()) {
+        if (Database.inventory().findAll().isEmpty()) {
             System.out.println("The inventory is currently empty.");
             return;
         }
@@ -37,8 +36,7 @@ public class InventoryControl {
         // Printing only total quantities
         System.out.printf("%-20s %-15s %-20s%n", "Medicine Name", "Total Quantity", "Low Stock Alert Level");
         System.out.println("-------------------------------------------------------------------------------");
-        for (Map.Entry<String, Medicine> entry : Database.inventoryMap.entrySet()) {
-            Medicine med = entry.getValue();
+        for (Medicine med : Database.inventory().findAll()) {
             System.out.printf("%-20s %-15s %-20s%n", med.getMedicineName(), med.getTotalQuantity(), (med.getIsLowStock() ? " **LOW STOCK ALERT**" : ""));
             System.out.println();
         }
@@ -58,7 +56,7 @@ public class InventoryControl {
     }
 
     public static boolean displayAllRequests() {
-        if (Database.requestMap == null || Database.requestMap.isEmpty()) {
+        if (Database.requests().findAll().isEmpty()) {
             System.out.println("No replenishment requests found.");
             return false;
         }
@@ -68,8 +66,7 @@ public class InventoryControl {
         System.out.printf("%-10s %-20s %-15s %-15s%n", "ID", "Medicine", "Quantity", "Status");
         System.out.println("-----------------------------------------------------------------");
 
-        for (Map.Entry<Integer, ReplenishmentRequest> entry : Database.requestMap.entrySet()) {
-            ReplenishmentRequest req = entry.getValue();
+        for (ReplenishmentRequest req : Database.requests().findAll()) {
             System.out.printf("%-10d %-20s %-15d %-15s%n",
                     req.getRequestID(),
                     req.getMedicine().getMedicineName(),
@@ -87,11 +84,11 @@ public class InventoryControl {
             System.out.print("Enter medicine: ");
             String medicineName = sc.nextLine();
             
-            if (!Database.inventoryMap.containsKey(medicineName)) {
+            Medicine medicine = Database.inventory().findByName(medicineName);
+            if (medicine == null) {
                 System.out.println( medicineName + " does not exist in the inventory."); 
                 continue;
             } 
-            Medicine medicine = Database.inventoryMap.get(medicineName);
             return medicine; 
         }
     }
@@ -107,8 +104,9 @@ public class InventoryControl {
                     return null;
                 }
 
-                if (Database.requestMap.containsKey(requestID)) {
-                    return Database.requestMap.get(requestID);
+                ReplenishmentRequest request = Database.requests().findById(requestID);
+                if (request != null) {
+                    return request;
                 } else {
                     System.out.println("Request ID " + requestID + " not found. Please try again.");
                 }
@@ -2,6 +2,7 @@ package hospitalsystem.inventorycontrol;
 
 import hospitalsystem.data.*;
 import hospitalsystem.model.*;
+import java.util.List;
 
 /**
  * Manages pharmacist-specific inventory operations.
@@ -23,13 +24,12 @@ public class PharmacistInventoryControl extends InventoryControl {
         System.out.println("Enter the medication name to request replenishment: ");
         String medicineName = sc.nextLine();
     
-        if (!Database.inventoryMap.containsKey(medicineName)) {
+        Medicine medicine = Database.inventory().findByName(medicineName);
+        if (medicine == null) {
             System.out.println("Medicine " + medicineName + " does not exist in the inventory.");
             return;
         }
     
-        Medicine medicine = Database.inventoryMap.get(medicineName);
-    
         System.out.println("Enter the quantity for replenishment: ");
         int quantity;
         try {
@@ -52,35 +52,30 @@ public class PharmacistInventoryControl extends InventoryControl {
     
     /**
      * Programmatic method to submit a replenishment request for a specific medicine.
-     * Typically called by other functions, such as automated inventory checks.
+     * If the medicine already has a pending request, that request is raised to the
+     * quantity instead of a second one being filed.
      *
      * @param medicine Medicine object for which to request replenishment.
      * @param quantity Quantity requested.
      */
     public static void submitReplenishmentRequestForMedicine(Medicine medicine, int quantity) {
-        int requestID = Database.requestMap.size() + 1; // Auto-increment ID
-        ReplenishmentRequest request = new ReplenishmentRequest(requestID, medicine, quantity);
-        Database.requestMap.put(requestID, request);
-        System.out.printf("Replenishment request submitted for medicine: %s, quantity: %d%n",
-                medicine.getMedicineName(), quantity);
+        ReplenishmentService.request(medicine, quantity);
     }
 
     /**
-     * Automatically submit replenishment requests for medicines with low stock.
+     * Makes sure every medicine with low stock has a pending replenishment request.
+     * Requests are also filed as soon as stock runs low, so this only catches up on
+     * medicines that were already low when the inventory was loaded.
      */
     public static void autoRequestLowStockReplenishment() {
         System.out.println("Checking for medications with low stock...");
-        boolean foundLowStock = false;
+        List<ReplenishmentRequest> requests = ReplenishmentService.requestAllLowStock();
 
-        for (Medicine medicine : Database.inventoryMap.values()) {
-            if (medicine.getIsLowStock()) {
-                foundLowStock = true;
-                System.out.println("Low stock detected for: " + medicine.getMedicineName());
-                submitReplenishmentRequestForMedicine(medicine, medicine.getMinStockLevel() * 2);
-            }
+        for (ReplenishmentRequest request : requests) {
+            System.out.println("Low stock detected for: " + request.getMedicine().getMedicineName());
         }
 
-        if (!foundLowStock) {
+        if (requests.isEmpty()) {
             System.out.println("No low-stock medicines found.");
         }
     }
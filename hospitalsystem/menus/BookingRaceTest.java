@@ -0,0 +1,149 @@
+package hospitalsystem.menus;
+import hospitalsystem.appointmentcontrol.PatientAppointmentControl;
+import hospitalsystem.data.Database;
+import hospitalsystem.enums.AppointmentStatus;
+import hospitalsystem.enums.BloodType;
+import hospitalsystem.enums.UserType;
+import hospitalsystem.model.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+
+/**
+ * Has several patients book the same slots at once, and reschedule onto the same slots at
+ * once, from one thread each. Checks that every slot goes to exactly one patient, that the
+ * losers are told so and keep what they had, and that every slot given up by a reschedule
+ * is reopened as pending. Runs on the memory storage engine unless -Dhms.storage is given;
+ * run it on a copy of the data folder with any other engine, as the test slots are saved.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class BookingRaceTest {
+    private static final int THREADS = 8;
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("hms.storage") == null) {
+            System.setProperty("hms.storage", "memory");
+        }
+        int slots = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        Database.ensureAllDataLoaded();
+        Doctor doctor = (Doctor) Database.users().findById(UserType.DOCTOR, "D001");
+        List<Patient> patients = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            patients.add(new Patient("TP" + t, "Test Patient " + t, "", LocalDate.of(2000, 1, 1), 24,
+                    "Other", BloodType.O_POSITIVE, "", "password"));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        int failures = 0;
+
+        // Every patient tries to book every slot
+        List<Appointment> booked = newSlots(doctor, "TB", 29000000, slots);
+        AtomicInteger bookings = new AtomicInteger();
+        long startTime = System.nanoTime();
+        run(executor, t -> {
+            for (Appointment slot : booked) {
+                if (PatientAppointmentControl.bookAppointment(patients.get(t), slot)) {
+                    bookings.incrementAndGet();
+                }
+            }
+        });
+        long bookingNanos = System.nanoTime() - startTime;
+        for (Appointment slot : booked) {
+            if (slot.getIsAvailable() || slot.getPatient() == null) {
+                System.out.println("FAIL: slot " + slot.getAppointmentID() + " not booked");
+                failures++;
+            }
+        }
+        if (bookings.get() != slots) {
+            System.out.printf("FAIL: %d slots booked %d times%n", slots, bookings.get());
+            failures++;
+        }
+
+        // Each patient holds one accepted appointment per target slot and tries to move it there
+        List<Appointment> targets = newSlots(doctor, "TR", 29100000, slots);
+        List<List<Appointment>> held = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<Appointment> current = newSlots(doctor, "TH" + t + "_", 29200000 + t * slots, slots);
+            for (Appointment appointment : current) {
+                PatientAppointmentControl.bookAppointment(patients.get(t), appointment);
+                appointment.setStatus(AppointmentStatus.BOOKED); // Accepted, so reopening it must reset the status
+            }
+            held.add(current);
+        }
+        AtomicInteger moves = new AtomicInteger();
+        startTime = System.nanoTime();
+        run(executor, t -> {
+            for (int i = 0; i < slots; i++) {
+                if (PatientAppointmentControl.rescheduleAppointment(patients.get(t), held.get(t).get(i), targets.get(i))) {
+                    moves.incrementAndGet();
+                }
+            }
+        });
+        long rescheduleNanos = System.nanoTime() - startTime;
+        executor.shutdown();
+        if (moves.get() != slots) {
+            System.out.printf("FAIL: %d slots taken by %d reschedules%n", slots, moves.get());
+            failures++;
+        }
+        for (int i = 0; i < slots; i++) {
+            Patient winner = targets.get(i).getPatient();
+            int kept = 0;
+            for (int t = 0; t < THREADS; t++) {
+                Appointment current = held.get(t).get(i);
+                if (current.getPatient() == patients.get(t) && !current.getIsAvailable()) {
+                    kept++;
+                } else if (patients.get(t) != winner || current.getPatient() != null
+                        || current.getStatus() != AppointmentStatus.PENDING) {
+                    System.out.println("FAIL: slot " + current.getAppointmentID() + " not reopened as pending");
+                    failures++;
+                }
+            }
+            if (winner == null || targets.get(i).getIsAvailable() || kept != THREADS - 1) {
+                System.out.println("FAIL: target " + targets.get(i).getAppointmentID() + " held by " + winner
+                        + ", " + kept + " patients kept their appointment");
+                failures++;
+            }
+        }
+
+        System.out.printf("%d patients, %d slots: %.1f us per booking attempt, %.1f us per reschedule attempt, %d failures%n",
+                THREADS, slots, bookingNanos / 1e3 / (THREADS * slots), rescheduleNanos / 1e3 / (THREADS * slots), failures);
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static List<Appointment> newSlots(Doctor doctor, String prefix, int firstMinute, int count) {
+        List<Appointment> slots = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Appointment slot = new Appointment(prefix + i, null, doctor, new Appointment.AppointmentSlot(firstMinute + i));
+            slot.setIsAvailable(true);
+            slots.add(slot);
+        }
+        Database.appointments().saveAll(slots);
+        return slots;
+    }
+
+    /**
+     * Runs a task on every thread at once and waits for all of them.
+     */
+    private static void run(ExecutorService executor, IntConsumer task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.accept(thread);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package hospitalsystem.menus;
+import hospitalsystem.data.Database;
+import hospitalsystem.data.DispensingService;
+import hospitalsystem.enums.PrescriptionStatus;
+import hospitalsystem.enums.UserType;
+import hospitalsystem.model.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Dispenses random prescriptions over a few shared medicines from several threads at once,
+ * each prescription by two threads, while the inventory and appointments are saved in the
+ * background. Checks that every prescription is dispensed all or nothing and at most once,
+ * that the stock of each medicine always matches the prescriptions dispensed, and that
+ * nothing deadlocks.
+ * Runs on the memory storage engine unless -Dhms.storage is given; run it on a copy of the
+ * data folder with any other engine, as the test medicines are saved.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class DispenseTest {
+    private static final String[] NAMES = {"Zeta", "Alpha", "Mu", "Kappa"};
+    private static final int THREADS = 8;
+    private static final int PRESCRIPTIONS = 400;
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("hms.storage") == null) {
+            System.setProperty("hms.storage", "memory");
+        }
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        Database.ensureAllDataLoaded();
+        Doctor doctor = (Doctor) Database.users().findById(UserType.DOCTOR, "D001");
+        Random random = new Random(7);
+        int failures = 0;
+        long dispensed = 0, refused = 0, nanos = 0;
+
+        for (int round = 0; round < rounds; round++) {
+            // Each medicine gets an expired batch, which must be retired rather than dispensed
+            Map<String, Integer> initial = new HashMap<>();
+            List<Medicine> medicines = new ArrayList<>();
+            for (String name : NAMES) {
+                Medicine medicine = new Medicine("Test" + name + round, 5, "");
+                List<Medicine.Batch> batches = new ArrayList<>();
+                batches.add(medicine.new Batch(50, LocalDate.now().minusDays(3)));
+                int total = 0;
+                for (int i = 0; i < 5; i++) {
+                    int quantity = 20 + random.nextInt(60);
+                    batches.add(medicine.new Batch(quantity, LocalDate.now().plusDays(1 + random.nextInt(400))));
+                    total += quantity;
+                }
+                medicine.setBatch(batches);
+                Database.inventory().save(medicine);
+                initial.put(medicine.getMedicineName(), total);
+                medicines.add(medicine);
+            }
+            medicines.sort(Comparator.comparing(Medicine::getMedicineName));
+
+            List<Appointment> appointments = new ArrayList<>();
+            for (int i = 0; i < PRESCRIPTIONS; i++) {
+                List<Medicine> shuffled = new ArrayList<>(medicines);
+                Collections.shuffle(shuffled, random);
+                List<Medicine.MedicineSet> sets = new ArrayList<>();
+                for (int j = 0, count = 1 + random.nextInt(shuffled.size()); j < count; j++) {
+                    sets.add(new Medicine.MedicineSet(shuffled.get(j), 1 + random.nextInt(8)));
+                }
+                Appointment appointment = new Appointment("T" + round + "_" + i, null, doctor,
+                        new Appointment.AppointmentSlot(28000000 + round * 1000 + i));
+                appointment.setPrescription(new Prescription(sets, doctor.getID(), "P1001", PrescriptionStatus.PENDING));
+                appointments.add(appointment);
+            }
+
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicLong mismatches = new AtomicLong();
+            // Reads the stock the way every reader does, with the medicines locked
+            Thread observer = new Thread(() -> {
+                while (!done.get()) {
+                    lockAll(medicines, 0, () -> {
+                        if (!matches(medicines, appointments, initial, false)) {
+                            mismatches.incrementAndGet();
+                        }
+                    });
+                }
+            });
+            Thread saver = new Thread(() -> {
+                while (!done.get()) {
+                    Database.saveInventoryData();
+                    Database.saveAppointmentData();
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            observer.start();
+            saver.start();
+
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            AtomicInteger successes = new AtomicInteger(), refusals = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int first = t % 2;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = first; i < appointments.size(); i += 2) {
+                        if (DispensingService.dispense(appointments.get(i))) {
+                            successes.incrementAndGet();
+                        } else {
+                            refusals.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            long startTime = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                try {
+                    future.get(60, TimeUnit.SECONDS);
+                } catch (TimeoutException e) {
+                    System.out.println("FAIL: dispensing did not finish, deadlocked threads:");
+                    long[] deadlocked = ManagementFactory.getThreadMXBean().findDeadlockedThreads();
+                    if (deadlocked != null) {
+                        for (ThreadInfo info : ManagementFactory.getThreadMXBean().getThreadInfo(deadlocked, true, true)) {
+                            System.out.print(info);
+                        }
+                    }
+                    System.exit(1);
+                }
+            }
+            nanos += System.nanoTime() - startTime;
+            executor.shutdown();
+            done.set(true);
+            observer.join();
+            saver.join();
+
+            int dispensedPrescriptions = 0;
+            for (Appointment appointment : appointments) {
+                if (appointment.getPrescription().getStatus() == PrescriptionStatus.DISPENSED) {
+                    dispensedPrescriptions++;
+                }
+            }
+            for (Medicine medicine : medicines) {
+                medicine.checkInvariants();
+            }
+            if (!matches(medicines, appointments, initial, true)) {
+                System.out.println("FAIL: round " + round + " stock does not match the dispensed prescriptions");
+                failures++;
+            }
+            if (dispensedPrescriptions != successes.get()) {
+                System.out.printf("FAIL: round %d dispensed %d prescriptions in %d dispenses%n",
+                        round, dispensedPrescriptions, successes.get());
+                failures++;
+            }
+            if (mismatches.get() > 0) {
+                System.out.println("FAIL: round " + round + " stock seen partly dispensed " + mismatches.get() + " times");
+                failures++;
+            }
+            dispensed += successes.get();
+            refused += refusals.get();
+        }
+
+        System.out.printf("%d rounds, %d dispensed, %d refused, %.1f us per dispense, %d failures%n",
+                rounds, dispensed, refused, nanos / 1e3 / (dispensed + refused), failures);
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * @return true if the stock of each medicine is its initial stock less what the
+     *         dispensed prescriptions took; while expired stock may still be in place, only
+     *         the unexpired stock is compared
+     */
+    private static boolean matches(List<Medicine> medicines, List<Appointment> appointments,
+                                   Map<String, Integer> initial, boolean finished) {
+        Map<String, Integer> taken = new HashMap<>();
+        for (Appointment appointment : appointments) {
+            Prescription prescription = appointment.getPrescription();
+            if (prescription.getStatus() == PrescriptionStatus.DISPENSED) {
+                prescription.getMedicineList().forEach((medicine, quantity) ->
+                        taken.merge(medicine.getMedicineName(), quantity, Integer::sum));
+            }
+        }
+        for (Medicine medicine : medicines) {
+            int expected = initial.get(medicine.getMedicineName()) - taken.getOrDefault(medicine.getMedicineName(), 0);
+            int unexpired = 0;
+            boolean expiredLeft = false;
+            for (Medicine.Batch batch : medicine.getBatchesUnordered()) {
+                if (batch.isExpired()) {
+                    expiredLeft = true;
+                } else {
+                    unexpired += batch.getQuantity();
+                }
+            }
+            if (unexpired != expected || (finished && expiredLeft)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void lockAll(List<Medicine> medicines, int position, Runnable action) {
+        if (position == medicines.size()) {
+            action.run();
+            return;
+        }
+        synchronized (medicines.get(position)) {
+            lockAll(medicines, position + 1, action);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package hospitalsystem.menus;
+import hospitalsystem.data.Database;
+import hospitalsystem.enums.AppointmentStatus;
+import hospitalsystem.model.Appointment;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Runs the same workload on the storage engine given with -Dhms.storage, so the engines can
+ * be compared by running it once with each: a first load, a number of single appointment
+ * updates, a full save and a load after it, as on the next start. With a number of
+ * appointments as argument, that many are generated and saved before the workload. Loads
+ * include the appointment history. The memory engine reloads only the CSV files it was
+ * seeded from. Writes the data files, so run it on a copy of the data folder.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class EngineBenchmark {
+    private static final int UPDATES = 5000;
+
+    public static void main(String[] args) {
+        String engine = Database.getStorageEngine().getName();
+        long startTime = System.nanoTime();
+        Database.loadAllData();
+        Database.loadAppointmentHistory();
+        long firstLoad = (System.nanoTime() - startTime) / 1_000_000;
+        if (args.length > 0) {
+            StorageRoundTripTest.generate(Integer.parseInt(args[0]));
+            Database.saveAllData();
+        }
+
+        List<Appointment> appointments = new ArrayList<>(Database.appointments().findAll());
+        Random random = new Random(42);
+        startTime = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++) {
+            Appointment appointment = appointments.get(random.nextInt(appointments.size()));
+            appointment.setStatus(i % 2 == 0 ? AppointmentStatus.CANCELLED : AppointmentStatus.BOOKED);
+            Database.appointments().save(appointment);
+        }
+        long updates = (System.nanoTime() - startTime) / 1_000;
+
+        startTime = System.nanoTime();
+        Database.saveAllData();
+        long save = (System.nanoTime() - startTime) / 1_000_000;
+
+        Database.unloadAllData();
+        startTime = System.nanoTime();
+        Database.loadAllData();
+        Database.loadAppointmentHistory();
+        long nextLoad = (System.nanoTime() - startTime) / 1_000_000;
+
+        System.out.printf("%s engine, %d appointments: first load %d ms, %.1f us per update, full save %d ms, next load %d ms%n",
+                engine, appointments.size(), firstLoad, updates / (double) UPDATES, save, nextLoad);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,62 @@
+package hospitalsystem.menus;
+import hospitalsystem.enums.AppointmentStatus;
+import hospitalsystem.enums.BloodType;
+import hospitalsystem.model.*;
+import java.lang.ref.Reference;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+
+/**
+ * Measures the heap taken per appointment, for empty future slots and for completed
+ * appointments with notes, from the heap in use before and after creating a million of
+ * each. The appointment IDs are created beforehand, so they are not counted. Run with a
+ * fixed heap and the serial collector, e.g. -Xmx3g -XX:+UseSerialGC, for stable results.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class FootprintBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Doctor doctor = new Doctor("D001", "John Smith", 45, "Male", "password");
+        Patient patient = new Patient("P1001", "Alice Brown", "", LocalDate.of(1980, 5, 14), 44,
+                "Female", BloodType.A_POSITIVE, "", "password");
+        String[] appointmentIDs = new String[count];
+        for (int i = 0; i < count; i++) {
+            appointmentIDs[i] = String.format("APT%07d", i);
+        }
+        int firstMinute = Appointment.AppointmentSlot.toEpochMinute(LocalDateTime.of(2027, 1, 4, 9, 0));
+
+        for (boolean completed : new boolean[] {false, true}) {
+            Appointment[] appointments = new Appointment[count];
+            long before = usedHeap();
+            for (int i = 0; i < count; i++) {
+                Appointment appointment = new Appointment(appointmentIDs[i], completed ? patient : null, doctor,
+                        new Appointment.AppointmentSlot(firstMinute + 30 * i));
+                if (completed) {
+                    appointment.setStatus(AppointmentStatus.COMPLETED);
+                    appointment.setConsultationNotes("Follow up");
+                } else {
+                    appointment.setIsAvailable(true);
+                }
+                appointments[i] = appointment;
+            }
+            long after = usedHeap();
+            Reference.reachabilityFence(appointments);
+            System.out.printf("%-25s %.1f bytes per appointment%n",
+                    completed ? "Completed with notes:" : "Empty future slot:", (after - before) / (double) count);
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
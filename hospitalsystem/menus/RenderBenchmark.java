@@ -0,0 +1,110 @@
+package hospitalsystem.menus;
+import hospitalsystem.appointmentcontrol.DoctorAppointmentControl;
+import hospitalsystem.data.Database;
+import hospitalsystem.enums.AppointmentStatus;
+import hospitalsystem.enums.BloodType;
+import hospitalsystem.model.*;
+import hospitalsystem.model.Appointment.AppointmentSlot;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Checks that slots are formatted as LocalDateTime formats them, over a sample of the whole
+ * range of slot minutes, then times the doctor's schedule listings on a 10,000 row schedule
+ * and reports the time, the bytes allocated and the bytes written per listing. The listings
+ * are written to a stream that only counts bytes. Runs on the memory storage engine unless
+ * -Dhms.storage is given.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class RenderBenchmark {
+    private static final int ROWS = 10_000;
+    private static final int RUNS = 50;
+
+    public static void main(String[] args) {
+        if (System.getProperty("hms.storage") == null) {
+            System.setProperty("hms.storage", "memory");
+        }
+        PrintStream console = System.out;
+        int checked = 0, mismatches = 0;
+        Random random = new Random(1);
+        for (long minute = Integer.MIN_VALUE; minute <= Integer.MAX_VALUE; minute += 1 + random.nextInt(9973)) {
+            AppointmentSlot slot = new AppointmentSlot((int) minute);
+            String expected = slot.getDateTime().toString().replace('T', ' ');
+            if (!expected.equals(slot.toString()) || !expected.equals(slot.getDate() + " " + slot.getTime())) {
+                if (mismatches++ < 5) {
+                    console.println("FAIL: " + slot + " formatted, " + expected + " expected");
+                }
+            }
+            checked++;
+        }
+        console.printf("%d slots formatted, %d mismatches%n", checked, mismatches);
+
+        Doctor doctor = new Doctor("D001", "John Smith", 45, "Male", "password");
+        Patient patient = new Patient("P1001", "Alice Brown", "", LocalDate.of(1980, 5, 14), 44,
+                "Female", BloodType.A_POSITIVE, "", "password");
+        List<Appointment> rows = new ArrayList<>();
+        AppointmentStatus[] statuses = AppointmentStatus.values();
+        LocalDateTime start = LocalDateTime.of(2027, 1, 4, 9, 0);
+        for (int i = 0; i < ROWS; i++) {
+            LocalDateTime dateTime = start.plusDays(i / 16).plusMinutes(30L * (i % 16));
+            Appointment appointment = new Appointment(String.format("APT%05d", i), patient, doctor,
+                    new AppointmentSlot(AppointmentSlot.toEpochMinute(dateTime)));
+            appointment.setStatus(statuses[i % statuses.length]);
+            appointment.setIsAvailable(i % 3 == 0);
+            rows.add(appointment);
+        }
+        Database.appointments().saveAll(rows);
+
+        String[] names = {"Available slots", "Unavailable slots", "Booked appointments", "Personal schedule"};
+        Runnable[] listings = {
+                () -> DoctorAppointmentControl.displayAvailableSlots(rows),
+                () -> DoctorAppointmentControl.displayUnavailableSlots(rows),
+                () -> DoctorAppointmentControl.displayBookedAppointments(rows),
+                () -> DoctorAppointmentControl.displayPersonalSchedule(doctor)
+        };
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        CountingStream counter = new CountingStream();
+        System.setOut(new PrintStream(counter, false));
+        for (int k = 0; k < listings.length; k++) {
+            for (int i = 0; i < RUNS; i++) {
+                listings[k].run(); // Warm-up
+            }
+            counter.count = 0;
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long startTime = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                listings[k].run();
+            }
+            long nanos = (System.nanoTime() - startTime) / RUNS;
+            long allocated = (threads.getCurrentThreadAllocatedBytes() - allocatedBefore) / RUNS;
+            console.printf("%-20s %6.2f ms, %8.1f KB allocated, %7d bytes written per listing of %d rows%n",
+                    names[k], nanos / 1e6, allocated / 1024.0, counter.count / RUNS, ROWS);
+        }
+        System.setOut(console);
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+
+    private static class CountingStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
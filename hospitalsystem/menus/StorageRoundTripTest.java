@@ -0,0 +1,184 @@
+package hospitalsystem.menus;
+import hospitalsystem.data.Database;
+import hospitalsystem.enums.AppointmentStatus;
+import hospitalsystem.enums.PrescriptionStatus;
+import hospitalsystem.enums.UserType;
+import hospitalsystem.model.*;
+import java.io.File;
+import java.util.*;
+
+
+/**
+ * Checks that everything saved through the storage engine reads back the same: changes to
+ * appointments that are only in the change log, a full save, and, for the CSV engine, a
+ * load from the binary snapshot against a load from the CSV files. Times each load, so with
+ * a number of generated appointments as argument it also compares the snapshot and CSV load
+ * times. Uses the engine given with -Dhms.storage, CSV by default, and rewrites the data
+ * files, so run it on a copy of the data folder.
+ *
+ * @author Gracelynn, Leo
+ * @version 1.0
+ * @since 2024-11-19
+ */
+public class StorageRoundTripTest {
+    private static final String SNAPSHOT_PATH = "hospitalsystem/data/Database.snapshot";
+
+    public static void main(String[] args) {
+        if ("memory".equalsIgnoreCase(System.getProperty("hms.storage"))) {
+            System.out.println("The memory storage engine does not persist anything to read back.");
+            return;
+        }
+        int generated = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        int failures = 0;
+
+        long loadTime = load();
+        if (generated > 0) {
+            generate(generated);
+            Database.saveAllData();
+        }
+        // Changes that only reach the change log until the next full save
+        List<Appointment> appointments = new ArrayList<>(Database.appointments().findAll());
+        Collections.sort(appointments);
+        AppointmentStatus[] statuses = AppointmentStatus.values();
+        for (int i = 0; i < Math.min(100, appointments.size()); i++) {
+            Appointment appointment = appointments.get(i);
+            appointment.setStatus(statuses[(appointment.getStatus().ordinal() + 1) % statuses.length]);
+            Database.appointments().save(appointment);
+        }
+        List<String> expected = dump();
+        System.out.printf("Loaded %d appointments in %d ms%n", appointments.size(), loadTime);
+
+        Database.unloadAllData();
+        loadTime = load();
+        failures += compare("after replaying the change log", expected, dump(), loadTime);
+
+        Database.saveAllData();
+        Database.unloadAllData();
+        loadTime = load();
+        failures += compare("after a full save", expected, dump(), loadTime);
+
+        if (new File(SNAPSHOT_PATH).delete()) {
+            Database.unloadAllData();
+            loadTime = load();
+            failures += compare("from the CSV files without the snapshot", expected, dump(), loadTime);
+            Database.unloadAllData();
+            loadTime = load();
+            failures += compare("from the snapshot written by that load", expected, dump(), loadTime);
+        }
+
+        System.out.println(failures == 0 ? "Round trip OK" : failures + " round trips FAILED");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static long load() {
+        long startTime = System.nanoTime();
+        Database.loadAllData();
+        Database.loadAppointmentHistory();
+        return (System.nanoTime() - startTime) / 1_000_000;
+    }
+
+    private static int compare(String step, List<String> expected, List<String> actual, long loadTime) {
+        if (expected.equals(actual)) {
+            System.out.printf("Same data %s, loaded in %d ms%n", step, loadTime);
+            return 0;
+        }
+        System.out.printf("FAIL: different data %s, %d lines expected, %d read%n", step, expected.size(), actual.size());
+        for (int i = 0, shown = 0; i < Math.max(expected.size(), actual.size()) && shown < 5; i++) {
+            String want = i < expected.size() ? expected.get(i) : null;
+            String got = i < actual.size() ? actual.get(i) : null;
+            if (!Objects.equals(want, got)) {
+                System.out.println("  expected " + want + "\n  read     " + got);
+                shown++;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Adds completed appointments with notes and prescriptions, cancelled ones and open
+     * slots, half an hour apart for each doctor.
+     */
+    static void generate(int count) {
+        List<User> doctors = new ArrayList<>(Database.users().findAll(UserType.DOCTOR));
+        List<User> patients = new ArrayList<>(Database.users().findAll(UserType.PATIENT));
+        List<Medicine> medicines = new ArrayList<>(Database.inventory().findAll());
+        int firstMinute = Appointment.AppointmentSlot.toEpochMinute(java.time.LocalDateTime.of(2020, 1, 6, 9, 0));
+        List<Appointment> batch = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Doctor doctor = (Doctor) doctors.get(i % doctors.size());
+            int minute = firstMinute + (i / doctors.size()) * 30;
+            Appointment appointment = new Appointment(String.format("APT%07d", 1_000_000 + i), null, doctor,
+                    new Appointment.AppointmentSlot(minute));
+            switch (i % 3) {
+                case 0 -> {
+                    appointment.setPatient((Patient) patients.get(i % patients.size()));
+                    appointment.setStatus(AppointmentStatus.COMPLETED);
+                    appointment.setConsultationNotes("Follow up, in " + (1 + i % 4) + " weeks");
+                    if (!medicines.isEmpty()) {
+                        Medicine medicine = medicines.get(i % medicines.size());
+                        appointment.setPrescription(new Prescription(List.of(new Medicine.MedicineSet(medicine, 1 + i % 3)),
+                                doctor.getID(), appointment.getPatient().getID(),
+                                i % 2 == 0 ? PrescriptionStatus.DISPENSED : PrescriptionStatus.PENDING));
+                    }
+                }
+                case 1 -> {
+                    appointment.setPatient((Patient) patients.get(i % patients.size()));
+                    appointment.setStatus(AppointmentStatus.CANCELLED);
+                }
+                default -> appointment.setIsAvailable(true);
+            }
+            batch.add(appointment);
+            if (batch.size() == 10_000) {
+                Database.appointments().saveAll(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        Database.appointments().saveAll(batch);
+    }
+
+    /**
+     * @return one line per user, medicine, appointment and request, in a stable order
+     */
+    private static List<String> dump() {
+        List<String> lines = new ArrayList<>();
+        for (UserType role : UserType.values()) {
+            for (User user : Database.users().findAll(role)) {
+                String line = String.join("|", role.toString(), user.getID(), user.getName(), user.getGender(),
+                        String.valueOf(user.getAge()), user.getPassword());
+                if (user instanceof Patient patient) {
+                    line += "|" + patient.getDOB() + "|" + patient.getBloodType() + "|" + patient.getEmail()
+                            + "|" + patient.getPhoneNumber();
+                }
+                lines.add(line);
+            }
+        }
+        for (Medicine medicine : Database.inventory().findAll()) {
+            StringBuilder line = new StringBuilder("MEDICINE|" + medicine.getMedicineName() + "|" + medicine.getMinStockLevel());
+            for (Medicine.Batch batch : medicine.getBatches()) {
+                line.append('|').append(batch.getQuantity()).append('@').append(batch.getExpirationDate());
+            }
+            lines.add(line.toString());
+        }
+        for (Appointment appointment : Database.appointments().findAll()) {
+            String prescribed = "";
+            Prescription prescription = appointment.getPrescription();
+            if (prescription != null) {
+                Map<String, Integer> medicines = new TreeMap<>();
+                prescription.getMedicineList().forEach((medicine, quantity) ->
+                        medicines.merge(medicine.getMedicineName(), quantity, Integer::sum));
+                prescribed = medicines + "/" + prescription.getStatus();
+            }
+            lines.add(String.join("|", "APPOINTMENT", appointment.getAppointmentID(),
+                    appointment.getPatient() == null ? "-" : appointment.getPatient().getID(),
+                    appointment.getDoctor().getID(), appointment.getSlot().toString(),
+                    appointment.getStatus().toString(), String.valueOf(appointment.getIsAvailable()),
+                    appointment.getConsultationNotes(), prescribed));
+        }
+        for (ReplenishmentRequest request : Database.requests().findAll()) {
+            lines.add("REQUEST|" + request.getRequestID() + "|" + request.getMedicine().getMedicineName()
+                    + "|" + request.getRequestedQuantity() + "|" + request.getStatus());
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+}
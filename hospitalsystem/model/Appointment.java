@@ -1,12 +1,19 @@
 package hospitalsystem.model;
 
 import hospitalsystem.enums.*; 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 /**
  * Represents an appointment in the Hospital Management System.
  * An appointment is associated with a patient, doctor, time slot, and outcome details.
  *
+ * Appointments are kept compact, as every generated slot is one: the slot time is stored
+ * as minutes since the epoch, status and availability share a single byte, and the
+ * outcome is only created once there is something to record.
+ *
  * @author Gracelynn, Leo
  * @version 1.0
  * @since 2024-11-19
@@ -20,7 +27,7 @@ public class Appointment implements Comparable<Appointment> {
     /**
      * The patient associated with the appointment.
      */
-    private Patient patient;
+    private volatile Patient patient;
 
     /**
      * The doctor associated with the appointment.
@@ -33,24 +40,36 @@ public class Appointment implements Comparable<Appointment> {
     private Pharmacist pharmacist;
 
     /**
-     * The time slot of the appointment.
+     * The start of the time slot, in minutes since 1970-01-01T00:00.
      */
-    private final AppointmentSlot slot;
+    private final int slotMinute;
 
     /**
-     * The status of the appointment.
+     * The status ordinal shifted left by one, with the lowest bit set while the slot is available.
      */
-    private AppointmentStatus status;
+    private volatile byte state = (byte) (AppointmentStatus.PENDING.ordinal() << 1 | AVAILABLE);
 
     /**
-     * The outcome of the appointment.
+     * The outcome of the appointment, or null until one is recorded.
      */
     private AppointmentOutcome outcome;
 
+    private static final int AVAILABLE = 1;
+    private static final AppointmentStatus[] STATUSES = AppointmentStatus.values();
+
     /**
-     * Indicates whether the appointment slot is available.
+     * Atomic access to state, so that only one of several concurrent bookings can take a slot
+     * and a status change never undoes a concurrent change of availability.
      */
-    private Boolean isAvailable = true;
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(Appointment.class, "state", byte.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
     /**
      * Compares this appointment with another appointment based on their time slots.
@@ -60,7 +79,7 @@ public class Appointment implements Comparable<Appointment> {
      */
     @Override
     public int compareTo(Appointment appointment) {
-        return this.slot.getDateTime().compareTo(appointment.slot.getDateTime());
+        return Integer.compare(this.slotMinute, appointment.slotMinute);
     }
 
 
@@ -76,9 +95,7 @@ public class Appointment implements Comparable<Appointment> {
         this.appointmentID = appointmentID;
         this.patient = patient;
         this.doctor = doctor;
-        this.slot = slot;
-        this.status = AppointmentStatus.PENDING;
-        this.outcome = new AppointmentOutcome(this, "", null, "", "");
+        this.slotMinute = slot.getEpochMinute();
     }
 
     // Getter and Setter methods
@@ -101,16 +118,27 @@ public class Appointment implements Comparable<Appointment> {
         this.pharmacist = pharmacist;
     }
 
+    /**
+     * @return the time slot, created on each call from the stored slot minute
+     */
     public AppointmentSlot getSlot() {
-        return slot;
+        return new AppointmentSlot(slotMinute);
+    }
+
+    /**
+     * @return the start of the time slot in minutes since 1970-01-01T00:00, for ordering
+     *         and indexing appointments without creating their slot
+     */
+    public int getSlotMinute() {
+        return slotMinute;
     }
 
     public AppointmentStatus getStatus() {
-        return status;
+        return STATUSES[state >> 1];
     }
 
     public boolean getIsAvailable(){
-        return this.isAvailable;
+        return (state & AVAILABLE) != 0;
     }
 
     public void setPatient(Patient patient){
@@ -118,14 +146,50 @@ public class Appointment implements Comparable<Appointment> {
     }
 
     public void setIsAvailable(boolean newValue){
-        this.isAvailable = newValue;
+        updateState(AVAILABLE, newValue ? AVAILABLE : 0);
+    }
+
+    /**
+     * Takes the slot if it is still available, as a single compare-and-set on its
+     * availability. When several sessions claim the same slot at once exactly one succeeds;
+     * the others see that the slot was taken instead of overwriting the booking.
+     *
+     * @param patient the patient booking the slot, or null when the doctor blocks it
+     * @return true if the slot was claimed, false if it was no longer available
+     */
+    public boolean claim(Patient patient) {
+        byte current;
+        do {
+            current = state;
+            if ((current & AVAILABLE) == 0) {
+                return false;
+            }
+        } while (!STATE.compareAndSet(this, current, (byte) (current & ~AVAILABLE)));
+        this.patient = patient;
+        return true;
     }
 
     public void setStatus(AppointmentStatus status) {
-        this.status = status;
+        updateState(~AVAILABLE, status.ordinal() << 1);
+    }
+
+    /**
+     * Replaces the bits of state selected by mask, leaving the others as they are.
+     */
+    private void updateState(int mask, int bits) {
+        byte current;
+        do {
+            current = state;
+        } while (!STATE.compareAndSet(this, current, (byte) ((current & ~mask) | bits)));
     }
 
+    /**
+     * @return the outcome of the appointment, created empty if none has been recorded yet
+     */
     public AppointmentOutcome getAppointmentOutcome() {
+        if (outcome == null) {
+            outcome = new AppointmentOutcome(this, "", null, "", "");
+        }
         return outcome;
     }
 
@@ -134,19 +198,23 @@ public class Appointment implements Comparable<Appointment> {
     }
 
     public Prescription getPrescription() {
-        return this.outcome.getPrescription();
+        return outcome == null ? null : outcome.getPrescription();
     }
 
     public void setPrescription(Prescription prescription) {
-        this.outcome.setPrescription(prescription);
+        if (prescription != null || outcome != null) {
+            getAppointmentOutcome().setPrescription(prescription);
+        }
     }
 
     public String getConsultationNotes() {
-        return this.outcome.getConsultationNotes();
+        return outcome == null ? "" : outcome.getConsultationNotes();
     }
 
     public void setConsultationNotes(String consultationNotes) {
-        this.outcome.setConsultationNotes(consultationNotes);
+        if ((consultationNotes != null && !consultationNotes.isEmpty()) || outcome != null) {
+            getAppointmentOutcome().setConsultationNotes(consultationNotes);
+        }
     }
 
     /**
@@ -161,8 +229,8 @@ public class Appointment implements Comparable<Appointment> {
         sb.append("\n  Appointment ID: ").append(appointmentID);
         sb.append("\n  Patient ID: ").append(patient.getID());
         sb.append("\n  Doctor ID: ").append(doctor.getID());
-        sb.append("\n  Slot: ").append(slot.toString());
-        sb.append("\n  Status: ").append(status);
+        sb.append("\n  Slot: ").append(getSlot().toString());
+        sb.append("\n  Status: ").append(getStatus());
         sb.append("\n}");
         
         return sb.toString();
@@ -174,26 +242,115 @@ public class Appointment implements Comparable<Appointment> {
     public static class AppointmentSlot {
         private final LocalDateTime dateTime;
 
+        private static final int MINUTES_PER_DAY = 24 * 60;
+        private static final int DAYS_PER_400_YEARS = 146097;
+        private static final int DAYS_0000_03_01_TO_EPOCH = 719468;
+
         public AppointmentSlot(int year, int month, int day, int hour, int minute) {
             this.dateTime = LocalDateTime.of(year, month, day, hour, minute);
         }
 
+        /**
+         * @param epochMinute the start of the slot in minutes since 1970-01-01T00:00
+         */
+        public AppointmentSlot(int epochMinute) {
+            this.dateTime = LocalDateTime.ofEpochSecond(epochMinute * 60L, 0, ZoneOffset.UTC);
+        }
+
         public LocalDateTime getDateTime() {
             return this.dateTime;
         }
 
+        /**
+         * @return the start of the slot in minutes since 1970-01-01T00:00
+         */
+        public int getEpochMinute() {
+            return toEpochMinute(dateTime);
+        }
+
+        /**
+         * @param dateTime a date and time, whose seconds are ignored
+         * @return the minutes since 1970-01-01T00:00
+         */
+        public static int toEpochMinute(LocalDateTime dateTime) {
+            return Math.toIntExact(Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60));
+        }
+
         public String getDate() {
-            return dateTime.toString().split("T")[0];
+            return appendDate(new StringBuilder(10), getEpochMinute()).toString();
         }
 
         public String getTime() {
-            return dateTime.toString().split("T")[1];
+            return appendTime(new StringBuilder(5), getEpochMinute()).toString();
         }
 
         @Override
         public String toString() {
-            return getDate() + ' ' + getTime();
+            return appendTo(new StringBuilder(16), getEpochMinute()).toString();
+        }
+
+        /**
+         * Appends a slot's date and time as yyyy-MM-dd HH:mm, the same text as toString(),
+         * straight from its minute, so that listings can format many slots into one reused
+         * buffer without creating a slot, a date or any strings.
+         *
+         * @param sb the buffer to append to
+         * @param epochMinute the start of the slot in minutes since 1970-01-01T00:00
+         * @return the buffer
+         */
+        public static StringBuilder appendTo(StringBuilder sb, int epochMinute) {
+            return appendTime(appendDate(sb, epochMinute).append(' '), epochMinute);
+        }
+
+        /**
+         * Appends a slot's date as yyyy-MM-dd, the same text as getDate().
+         *
+         * @param sb the buffer to append to
+         * @param epochMinute the start of the slot in minutes since 1970-01-01T00:00
+         * @return the buffer
+         */
+        public static StringBuilder appendDate(StringBuilder sb, int epochMinute) {
+            // Civil date of the day, counted in 400-year eras starting on 0000-03-01 so that
+            // the leap day falls at the end of each year
+            int daysSince0000_03_01 = Math.floorDiv(epochMinute, MINUTES_PER_DAY) + DAYS_0000_03_01_TO_EPOCH;
+            int era = Math.floorDiv(daysSince0000_03_01, DAYS_PER_400_YEARS);
+            int dayOfEra = daysSince0000_03_01 - era * DAYS_PER_400_YEARS;
+            int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+            int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+            int marchMonth = (5 * dayOfYear + 2) / 153;
+            int day = dayOfYear - (153 * marchMonth + 2) / 5 + 1;
+            int month = marchMonth < 10 ? marchMonth + 3 : marchMonth - 9;
+            int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+            if (year < 0) {
+                sb.append('-');
+                year = -year;
+            }
+            if (year < 1000) {
+                sb.append(year < 10 ? "000" : year < 100 ? "00" : "0");
+            }
+            sb.append(year).append('-');
+            appendTwoDigits(sb, month).append('-');
+            return appendTwoDigits(sb, day);
         }
+
+        /**
+         * Appends a slot's time as HH:mm, the same text as getTime().
+         *
+         * @param sb the buffer to append to
+         * @param epochMinute the start of the slot in minutes since 1970-01-01T00:00
+         * @return the buffer
+         */
+        public static StringBuilder appendTime(StringBuilder sb, int epochMinute) {
+            int minuteOfDay = Math.floorMod(epochMinute, MINUTES_PER_DAY);
+            appendTwoDigits(sb, minuteOfDay / 60).append(':');
+            return appendTwoDigits(sb, minuteOfDay % 60);
+        }
+
+        private static StringBuilder appendTwoDigits(StringBuilder sb, int value) {
+            return sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+        }
+
     }
 
     /**
@@ -58,4 +58,8 @@ public class Doctor extends User {
         this.upcomingAppointments.remove(appointment);
     }
 
+    public void clearAppointments() {
+        this.upcomingAppointments.clear();
+    }
+
 }
\ No newline at end of file
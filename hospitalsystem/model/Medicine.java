@@ -2,12 +2,32 @@ package hospitalsystem.model;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
 
 /**
  * Represents a medicine in the Hospital Management System.
  * A medicine has a name, instructions, batches, and minimum stock level.
  *
+ * Batches are kept first-expiry-first-out: a min-heap ordered by expiration date, so that
+ * stock is always taken from the batch that expires soonest, at O(log b) per batch used
+ * up, and new stock can arrive in any order.
+ *
+ * The total quantity is kept as a running sum, updated whenever a batch is added, removed
+ * or changes quantity, so that stock levels and low-stock checks cost the same however many
+ * batches a medicine has. Running with -Dhms.checkInvariants=true re-checks the sum
+ * against the batches after every change.
+ *
+ * Stock changes and reads of the batches are synchronized on the medicine, as expired
+ * stock is retired by a background task.
+ *
+ * A stock listener, if set, is told of every change that takes a medicine below its
+ * minimum stock level, lowers it further while it is below, or brings it back up, so low
+ * stock is acted on when it happens instead of by scanning the inventory for it.
+ *
  * @author Gracelynn, Shaivi
  * @version 1.0
  * @since 2024-11-19
@@ -24,15 +44,30 @@ public class Medicine {
     private final String instructions;
 
     /**
-     * The list of batches for the medicine.
+     * The batches of the medicine, soonest expiring at the head.
      */
-    private List<Batch> batches;
+    private PriorityQueue<Batch> batches = new PriorityQueue<>();
+
+    /**
+     * The sum of the quantities of the batches.
+     */
+    private volatile int totalQuantity;
 
     /**
      * The minimum stock level for the medicine.
      */
     private int minimumStockLevel;
 
+    /**
+     * Whether every stock change re-checks the invariants, set with -Dhms.checkInvariants=true.
+     */
+    private static final boolean CHECK_INVARIANTS = Boolean.getBoolean("hms.checkInvariants");
+
+    /**
+     * Told of changes to whether medicines are low on stock, or null.
+     */
+    private static volatile Consumer<Medicine> stockListener;
+
     /**
      * Constructs a Medicine object with the given parameters.
      *
@@ -51,11 +86,29 @@ public class Medicine {
         return medicineName;
     }
 
+    /**
+     * @return a read-only copy of the batches, soonest expiring first, for display
+     */
     public List<Batch> getBatches() {
-        if (batches == null) {
-            batches = new ArrayList<>();
-        }
-        return batches;
+        // Sorted once the medicine is unlocked, so stock changes do not wait on the sort
+        List<Batch> sorted = new ArrayList<>(getBatchesUnordered());
+        Collections.sort(sorted);
+        return Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * @return a read-only copy of the batches in no particular order, for saving and
+     *         indexing, which need every batch but not the order
+     */
+    public synchronized List<Batch> getBatchesUnordered() {
+        return List.copyOf(batches);
+    }
+
+    /**
+     * @return the batch that expires soonest, or null if there is no stock
+     */
+    public synchronized Batch getSoonestExpiringBatch() {
+        return batches.peek();
     }
 
     public int getMinStockLevel() {
@@ -66,21 +119,148 @@ public class Medicine {
         return instructions;
     }
 
-    public void setMinimumSttockLevel(int lowStockAlert) {
+    public synchronized void setMinimumSttockLevel(int lowStockAlert) {
+        boolean wasLow = getIsLowStock();
         this.minimumStockLevel = lowStockAlert;
+        stockChanged(totalQuantity, wasLow);
     }
 
-    public void setBatch(List<Batch> newBatches){
-        this.batches = newBatches;
+    /**
+     * Sets the listener told when a stock change takes a medicine below its minimum stock
+     * level, lowers it further while it is below, or brings it back up. The listener is
+     * called while the medicine is locked, so it must not wait on another medicine.
+     *
+     * @param listener the listener, or null for none
+     */
+    public static void setStockListener(Consumer<Medicine> listener) {
+        stockListener = listener;
+    }
+
+    /**
+     * Replaces the batches, in any order.
+     *
+     * @param newBatches the new batches
+     */
+    public synchronized void setBatch(Collection<Batch> newBatches){
+        int before = totalQuantity;
+        for (Batch batch : batches) {
+            batch.inStock = false;
+        }
+        this.batches = new PriorityQueue<>(newBatches);
+        totalQuantity = 0;
+        for (Batch batch : batches) {
+            batch.inStock = true;
+            totalQuantity += batch.quantity;
+        }
+        stockChanged(before);
+    }
+
+    /**
+     * Adds a batch of new stock.
+     *
+     * @param batch the batch to add
+     */
+    public synchronized void addBatch(Batch batch) {
+        int before = totalQuantity;
+        batches.add(batch);
+        batch.inStock = true;
+        totalQuantity += batch.quantity;
+        stockChanged(before);
+    }
+
+    /**
+     * Removes the batch that expires soonest, such as an expired one.
+     *
+     * @return the removed batch, or null if there is no stock
+     */
+    public synchronized Batch removeSoonestExpiringBatch() {
+        Batch soonest = batches.poll();
+        if (soonest != null) {
+            int before = totalQuantity;
+            soonest.inStock = false;
+            totalQuantity -= soonest.quantity;
+            stockChanged(before);
+        }
+        return soonest;
+    }
+
+    /**
+     * Takes stock first-expiry-first-out: whole batches are used up, soonest expiring
+     * first, and the last batch needed is reduced by what remains.
+     *
+     * @param quantity the quantity to take
+     * @return the quantity taken, less than asked for only if the stock ran out
+     */
+    public synchronized int takeStock(int quantity) {
+        int remaining = quantity;
+        while (remaining > 0 && !batches.isEmpty()) {
+            Batch soonest = batches.peek();
+            if (soonest.getQuantity() <= remaining) {
+                removeSoonestExpiringBatch();
+                remaining -= soonest.getQuantity();
+            } else {
+                soonest.setQuantity(soonest.getQuantity() - remaining);
+                remaining = 0;
+            }
+        }
+        return quantity - remaining;
+    }
+
+    /**
+     * Removes every batch that expires before the given date. Expired batches are the
+     * soonest expiring, so they are taken off the head of the heap.
+     *
+     * @param date the first date on which a batch is still usable, such as today
+     * @return the removed batches, soonest expiring first
+     */
+    public synchronized List<Batch> removeBatchesExpiringBefore(LocalDate date) {
+        List<Batch> removed = new ArrayList<>();
+        while (!batches.isEmpty() && batches.peek().getExpirationDate().isBefore(date)) {
+            removed.add(removeSoonestExpiringBatch());
+        }
+        return removed;
     }
 
     // Get total quantity across all batches
     public int getTotalQuantity() {
-        int total = 0;
+        return totalQuantity;
+    }
+
+    /**
+     * Checks that the running total matches the batches and that no batch has a negative
+     * quantity. Runs after every stock change when -Dhms.checkInvariants=true is set, and
+     * can be called directly, such as from a test.
+     *
+     * @throws IllegalStateException if the invariants do not hold
+     */
+    public synchronized void checkInvariants() {
+        long sum = 0;
         for (Batch batch : batches) {
-            total += batch.getQuantity();
+            if (batch.quantity < 0 || !batch.inStock) {
+                throw new IllegalStateException(medicineName + " has an invalid batch of " + batch.quantity
+                        + " expiring " + batch.expirationDate);
+            }
+            sum += batch.quantity;
+        }
+        if (sum != totalQuantity) {
+            throw new IllegalStateException(medicineName + " has a total of " + totalQuantity
+                    + " but its batches hold " + sum);
+        }
+    }
+
+    private void stockChanged(int before) {
+        stockChanged(before, before < minimumStockLevel);
+    }
+
+    private void stockChanged(int before, boolean wasLow) {
+        if (CHECK_INVARIANTS) {
+            checkInvariants();
+        }
+        Consumer<Medicine> listener = stockListener;
+        boolean low = getIsLowStock();
+        if (listener != null && (low != wasLow || low && totalQuantity < before)) {
+            listener.accept(this);
         }
-        return total;
     }
 
     // Method to check if the total stock is below the low stock alert threshold
@@ -103,6 +283,10 @@ public class Medicine {
          * The expiration date of the batch.
          */
         private final LocalDate expirationDate;
+        /**
+         * Whether the batch is currently part of its medicine's stock, and so counted in its total.
+         */
+        private boolean inStock;
 
         /**
          * Constructs a Batch object with the given parameters.
@@ -137,7 +321,33 @@ public class Medicine {
 
         // Setter for quantity (used when dispensing medication)
         public void setQuantity(int quantity) {
-            this.quantity = quantity;
+            synchronized (Medicine.this) {
+                int before = totalQuantity;
+                if (inStock) {
+                    totalQuantity += quantity - this.quantity;
+                }
+                this.quantity = quantity;
+                if (inStock) {
+                    stockChanged(before);
+                }
+            }
+        }
+
+        /**
+         * @return the medicine the batch is stock of
+         */
+        public Medicine getMedicine() {
+            return Medicine.this;
+        }
+
+        /**
+         * @return whether the batch is still part of its medicine's stock, rather than used
+         *         up or removed
+         */
+        public boolean isInStock() {
+            synchronized (Medicine.this) {
+                return inStock;
+            }
         }
 
         // Check if the batch is expired
@@ -43,7 +43,7 @@ public class Prescription {
      */
     public Prescription(List<Medicine.MedicineSet> prescribedMedicine, String doctorID, String patientID, PrescriptionStatus status) {
         this.patientID = patientID;
-        this.status = PrescriptionStatus.PENDING;
+        this.status = status;
         this.doctorID = doctorID;
         for (Medicine.MedicineSet set:prescribedMedicine){
             medicineList.put(set.getMedicine(), set.getQuantity());
@@ -23,7 +23,7 @@ public class ReplenishmentRequest {
     /**
      * The requested quantity of the medicine.
      */
-    private final int requestedQuantity;
+    private int requestedQuantity;
 
     /**
      * The status of the replenishment request.
@@ -57,6 +57,10 @@ public class ReplenishmentRequest {
         return requestedQuantity;
     }
 
+    public void setRequestedQuantity(int requestedQuantity) {
+        this.requestedQuantity = requestedQuantity;
+    }
+
     public RequestStatus getStatus() {
         return status;
     }
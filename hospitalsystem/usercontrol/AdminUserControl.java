@@ -2,13 +2,14 @@ package hospitalsystem.usercontrol;
 
 import hospitalsystem.HMS;
 import hospitalsystem.data.Database;
+import hospitalsystem.data.SequenceService;
 import hospitalsystem.enums.BloodType;
+import hospitalsystem.enums.Sequence;
 import hospitalsystem.enums.UserType;
 import hospitalsystem.model.*;
 import java.time.LocalDate;
 import java.util.Collection;
 import java.util.InputMismatchException;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -57,9 +58,9 @@ public class AdminUserControl extends UserControl {
         }
 
         switch (role) {
-            case DOCTOR -> staffCollection = Database.doctorsMap.values();
-            case PHARMACIST -> staffCollection = Database.pharmsMap.values();
-            case ADMINISTRATOR -> staffCollection = Database.adminsMap.values();
+            case DOCTOR -> staffCollection = Database.users().findAll(UserType.DOCTOR);
+            case PHARMACIST -> staffCollection = Database.users().findAll(UserType.PHARMACIST);
+            case ADMINISTRATOR -> staffCollection = Database.users().findAll(UserType.ADMINISTRATOR);
             case PATIENT -> { 
                 System.out.println("Invalid staff role specified. Patients are not staff.");
                 return;}
@@ -133,9 +134,9 @@ public class AdminUserControl extends UserControl {
         // Retrieve staff
         User staff = null;
         switch (role) {
-            case DOCTOR -> staff = Database.doctorsMap.get(staffID);
-            case PHARMACIST -> staff = Database.pharmsMap.get(staffID);
-            case ADMINISTRATOR -> staff = Database.adminsMap.get(staffID); 
+            case DOCTOR -> staff = Database.users().findById(UserType.DOCTOR, staffID);
+            case PHARMACIST -> staff = Database.users().findById(UserType.PHARMACIST, staffID);
+            case ADMINISTRATOR -> staff = Database.users().findById(UserType.ADMINISTRATOR, staffID); 
         }
         if (staff == null) { //if not found
             System.out.println("No " + role + " found with ID " + staffID);
@@ -173,6 +174,7 @@ public class AdminUserControl extends UserControl {
                         int age = sc.nextInt();
                         sc.nextLine();
                         staff.setAge(age);
+                        Database.users().save(staff);
                         System.out.println("Age updated.");
                     } catch (InputMismatchException e) {
                         System.out.println("Invalid, please input a number");
@@ -183,6 +185,7 @@ public class AdminUserControl extends UserControl {
                     System.out.print("Enter new password: ");
                     String password = sc.nextLine().trim();
                     staff.setPassword(password);
+                    Database.users().save(staff);
                     System.out.println("Password updated to " + password);
                     break;
                 case 3: 
@@ -229,19 +232,19 @@ public class AdminUserControl extends UserControl {
                     String phoneNumber = "";
                     BloodType bloodType = BloodType.UNDEFINED; //default
                     Patient patient = new Patient(userID, name, phoneNumber, DOB, age, gender, bloodType, email, password);
-                    Database.patientsMap.put(userID, patient);
+                    Database.users().save(patient);
                     break;
                 case DOCTOR: 
                     Doctor doc = new Doctor(userID, name, age, gender, password);
-                    Database.doctorsMap.put(userID, doc);
+                    Database.users().save(doc);
                     break; 
                 case PHARMACIST: 
                     Pharmacist pharm = new Pharmacist(userID, name, age, gender, password);
-                    Database.pharmsMap.put(userID, pharm);
+                    Database.users().save(pharm);
                     break; 
                 case ADMINISTRATOR:
                     Administrator admin = new Administrator(userID, name, age, gender, password);
-                    Database.adminsMap.put(userID, admin);
+                    Database.users().save(admin);
                     break; 
             }
             System.out.printf("%s %s added at ID %s %n", role, name, userID);
@@ -260,42 +263,44 @@ public class AdminUserControl extends UserControl {
      */
     private static String generateID(UserType role) {
         String prefix;
-        int maxID = 0;
+        Sequence sequence;
         int parseIDIndex = 1;
         int nextID; 
-        Map<String, User> userMap;
         
-        // Determine correct prefix and map    
+        // Determine correct prefix    
         switch (role){
             case PATIENT:
                 prefix = "P1";
+                sequence = Sequence.PATIENT;
                 parseIDIndex = 2;
-                userMap = Database.patientsMap;
                 break;
             case DOCTOR:
                 prefix = "D";
-                userMap = Database.doctorsMap;
+                sequence = Sequence.DOCTOR;
                 break;
             case PHARMACIST:
                 prefix = "P";
-                userMap = Database.pharmsMap;
+                sequence = Sequence.PHARMACIST;
                 break;
             case ADMINISTRATOR:
                 prefix = "A";
-                userMap = Database.adminsMap;
+                sequence = Sequence.ADMINISTRATOR;
                 break;
             default:
                 return ("");
             }
 
-        // Find next available ID in that map
-        for (User user : userMap.values()) {
-            System.out.println(user.getID() + " " + user.getName());
-            int idNumber = Integer.parseInt(user.getID().substring(parseIDIndex));
-            if (idNumber > maxID) 
-                maxID = idNumber;
-        }
-        nextID = maxID + 1;
+        // Only scan the users with that role if the sequence has not been persisted yet
+        int idIndex = parseIDIndex;
+        nextID = SequenceService.next(sequence, () -> {
+            int maxID = 0;
+            for (User user : Database.users().findAll(role)) {
+                int idNumber = Integer.parseInt(user.getID().substring(idIndex));
+                if (idNumber > maxID) 
+                    maxID = idNumber;
+            }
+            return maxID;
+        });
 
         // Format ID
         return String.format("%s%03d", prefix, nextID); 
@@ -320,15 +325,10 @@ public class AdminUserControl extends UserControl {
             String userID = sc.nextLine().toUpperCase().trim();
 
             // Remove user
-            boolean removed = false;
-            switch (role) {
-                case PATIENT -> removed = removeFromMap(Database.patientsMap, userID);
-                case DOCTOR -> removed = removeFromMap(Database.doctorsMap, userID);
-                case PHARMACIST -> removed = removeFromMap(Database.pharmsMap, userID);
-                case ADMINISTRATOR -> removed = removeFromMap(Database.adminsMap, userID);
-                default -> System.out.println("Invalid input. Please enter Doctor, Pharmacist, Administrator or Patient.");
+            boolean removed = Database.users().remove(role, userID) != null;
+            if (removed) {
+                System.out.println("User member with ID " + userID + " has been successfully removed.");
             }
-            if (removed) {System.out.println("User member with ID " + userID + " has been successfully removed."); }
             else {System.out.println("User member with ID " + userID + " not found."); }
             
             // Offer option to repeat
@@ -336,19 +336,6 @@ public class AdminUserControl extends UserControl {
         }
     }
 
-    /**
-     * Removes a user from the specified map using their ID.
-     * Helper method for user removal process.
-     *
-     * @param userMap the map containing user records
-     * @param staffID the ID of the user to remove
-     * @return true if user was successfully removed, false if not found
-     */
-    private static boolean removeFromMap(Map<String, ? extends User> userMap, String userID) {
-        return (userMap.remove(userID) != null);
-        // remove returns the removed value if it exists, or null if not found
-    }
-
     /**
      * Gets staff role input from user through interactive console.
      * Similar to getRoleInput but excludes Patient role.
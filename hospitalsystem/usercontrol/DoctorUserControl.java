@@ -137,6 +137,7 @@ public class DoctorUserControl extends UserControl {
         }
 
         // Get prescriptions
+        Database.ensureInventoryLoaded();
         List<Medicine.MedicineSet> prescribedMedicineList = new ArrayList<>();
         while (true) {
             System.out.print("Add prescription? (y/n): ");
@@ -149,7 +150,7 @@ public class DoctorUserControl extends UserControl {
             int quantity = Integer.parseInt(sc.nextLine());
 
             // Check if medicine exists in inventory
-            Medicine medicine = Database.inventoryMap.get(medicineName);
+            Medicine medicine = Database.inventory().findByName(medicineName);
             if (medicine == null) {
                 System.out.println("Medicine not found in inventory.");
                 continue;
@@ -185,7 +186,6 @@ public class DoctorUserControl extends UserControl {
         appointment.setConsultationNotes(notes.toString());
 
         // Update database and patient records
-        Database.appointmentMap.put(appointmentID, appointment);
         List<Appointment> patientAppointments = patient.getAppointments();
         if (patientAppointments == null) {
             patientAppointments = new ArrayList<>();
@@ -193,7 +193,7 @@ public class DoctorUserControl extends UserControl {
         patientAppointments.add(appointment);
         patient.setAppointments(patientAppointments);
 
-        Database.saveAppointmentsToCSV();
+        Database.appointments().save(appointment);
         System.out.println("Medical record updated successfully.");
     }
 
@@ -245,8 +245,9 @@ public class DoctorUserControl extends UserControl {
      * @return Patient object if found, null otherwise
      */
     public static Patient findPatientById(String patientId) {
-        Patient patient = (Patient) Database.patientsMap.get(patientId);
+        Patient patient = (Patient) Database.users().findById(UserType.PATIENT, patientId);
         if (patient != null) {
+            Database.loadAppointmentsForPatient(patientId);
             return patient;
         } else {
             System.out.println("Patient not found.\n\n");
@@ -263,6 +264,7 @@ public class DoctorUserControl extends UserControl {
      */
     private static void updateBloodType(Patient patient, BloodType bloodType) {
         patient.setBloodType(bloodType);
+        Database.users().save(patient);
     }
 
     /**
@@ -274,6 +276,7 @@ public class DoctorUserControl extends UserControl {
      */
     private static void updateGender(Patient patient, String gender) {
         patient.setGender(gender);
+        Database.users().save(patient);
     }
 
     /**
@@ -1,6 +1,7 @@
 package hospitalsystem.usercontrol;
 
 import hospitalsystem.data.Database;
+import hospitalsystem.enums.DataSet;
 import hospitalsystem.model.Patient;
 import hospitalsystem.model.User;
 
@@ -87,7 +88,7 @@ public class PatientUserControl extends UserControl {
                     break;
                 case 3: 
                     System.out.println("Finished updating details");
-                    Database.savePatientData();
+                    Database.requestSave(DataSet.PATIENTS);
                     return;
                 default:
                     System.out.println("Invalid choice. Please try again.");
@@ -104,6 +105,7 @@ public class PatientUserControl extends UserControl {
     static public void updateEmail(Patient patient, String email){
         if (email.contains("@")){
             patient.setEmail(email);
+            Database.users().save(patient);
             System.out.println("Successfully updated email.");
         }
         else{
@@ -123,6 +125,7 @@ public class PatientUserControl extends UserControl {
             System.out.println("Invalid phone number. Input contains alphanumeric characters.");
         } else {
             patient.setPhoneNumber(phoneNumber);
+            Database.users().save(patient);
             System.out.println("Successfully updated phone number.");
         }
     }
@@ -44,7 +44,7 @@ public class PharmacistUserControl extends UserControl{
         String appointmentID = sc.nextLine();
 
         // Retrieve the appointment from the database
-        Appointment appointment = Database.appointmentMap.get(appointmentID);
+        Appointment appointment = Database.appointments().findById(appointmentID);
 
         if (appointment == null) {
             System.out.println("No appointment found with ID: " + appointmentID);
@@ -95,7 +95,7 @@ public class PharmacistUserControl extends UserControl{
         String appointmentID = sc.nextLine();
 
         // Validate and fetch appointment
-        Appointment appointment = Database.appointmentMap.get(appointmentID);
+        Appointment appointment = Database.appointments().findById(appointmentID);
         if (appointment == null) {
             System.out.println("No appointment found with ID: " + appointmentID);
             return;
@@ -146,14 +146,13 @@ public class PharmacistUserControl extends UserControl{
         String statusInput = sc.nextLine().toUpperCase();
         try {
             PrescriptionStatus newStatus = PrescriptionStatus.valueOf(statusInput);
-            prescription.setStatus(newStatus);
+            // Updates and saves the appointment
+            if (!PharmacistAppointmentControl.updatePrescriptionStatus(appointment, newStatus)) {
+                return;
+            }
             System.out.printf("Prescription status for %s updated to %s successfully.%n",
                     medicines.get(prescriptionIndex).getMedicineName(),
                     newStatus);
-
-            // Update the database
-            Database.appointmentMap.put(appointmentID, appointment);
-            Database.saveAppointmentsToCSV();
         } catch (IllegalArgumentException e) {
             System.out.println("Invalid status. Please use PENDING, DISPENSED, or REJECTED.");
         }